@@ -0,0 +1,62 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.exceptions;
+
+/**
+ * Thrown when a fetch reads more rows or more estimated bytes than its result
+ * limit allows. the fetch stops reading as soon as the limit is passed.
+ *
+ * @author Jhon Melvin
+ */
+public class ResultTooLargeException extends PolarisRuntimeException {
+
+    private final long rowCount;
+    private final long estimatedBytes;
+
+    public ResultTooLargeException(String message, long rowCount, long estimatedBytes) {
+        super(message);
+        this.rowCount = rowCount;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     *
+     * @return rows read when the limit was passed.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     *
+     * @return estimated bytes of the rows read when the limit was passed, 0
+     * when the limit has no byte maximum and the accounting is disabled.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Common aggregators for DataSet.groupBy. null values are skipped. these are
+ * plain collectors so any java.util.stream.Collector of DataRow can be used
+ * as well.
+ *
+ * <pre>
+ * Map&lt;Object, Double&gt; totals = invoices.groupBy("tenant_id", Aggregators.sum("total"));
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public final class Aggregators {
+
+    private Aggregators() {
+        // static class.
+    }
+
+    /**
+     * Number of rows.
+     *
+     * @return
+     */
+    public static Collector<DataRow, ?, Long> count() {
+        return Collectors.counting();
+    }
+
+    /**
+     * Sum of a numeric column as long.
+     *
+     * @param column
+     * @return
+     */
+    public static Collector<DataRow, ?, Long> sumLong(String column) {
+        return Collectors.summingLong(row -> {
+            Number value = (Number) row.get(column);
+            return value == null ? 0L : value.longValue();
+        });
+    }
+
+    /**
+     * Sum of a numeric column as double.
+     *
+     * @param column
+     * @return
+     */
+    public static Collector<DataRow, ?, Double> sum(String column) {
+        return Collectors.summingDouble(row -> {
+            Number value = (Number) row.get(column);
+            return value == null ? 0.0 : value.doubleValue();
+        });
+    }
+
+    /**
+     * Average of the non null values of a numeric column.
+     *
+     * @param column
+     * @return NaN when every value is null.
+     */
+    public static Collector<DataRow, ?, Double> average(String column) {
+        // averagingDouble gives 0.0 for no values, count them to return NaN.
+        return Aggregators.nonNull(column, Collectors.collectingAndThen(
+                Collectors.summarizingDouble(row -> ((Number) row.get(column)).doubleValue()),
+                stats -> stats.getCount() == 0 ? Double.NaN : stats.getAverage()));
+    }
+
+    /**
+     * Lowest non null value of a column.
+     *
+     * @param <T>
+     * @param column
+     * @return null when every value is null.
+     */
+    public static <T extends Comparable<? super T>> Collector<DataRow, ?, T> min(String column) {
+        return Aggregators.nonNull(column, Collectors.collectingAndThen(
+                Collectors.minBy(Comparator.comparing(row -> row.<T>getValue(column))),
+                found -> found.map(row -> row.<T>getValue(column)).orElse(null)));
+    }
+
+    /**
+     * Highest non null value of a column.
+     *
+     * @param <T>
+     * @param column
+     * @return null when every value is null.
+     */
+    public static <T extends Comparable<? super T>> Collector<DataRow, ?, T> max(String column) {
+        return Aggregators.nonNull(column, Collectors.collectingAndThen(
+                Collectors.maxBy(Comparator.comparing(row -> row.<T>getValue(column))),
+                found -> found.map(row -> row.<T>getValue(column)).orElse(null)));
+    }
+
+    /**
+     * Passes only the rows with a non null value to the downstream collector.
+     */
+    private static <A, R> Collector<DataRow, A, R> nonNull(String column, Collector<DataRow, A, R> downstream) {
+        BiConsumer<A, DataRow> accumulator = downstream.accumulator();
+        return Collector.of(downstream.supplier(), (container, row) -> {
+            if (row.get(column) != null) {
+                accumulator.accept(container, row);
+            }
+        }, downstream.combiner(), downstream.finisher());
+    }
+
+}
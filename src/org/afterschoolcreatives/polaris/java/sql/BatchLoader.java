@@ -0,0 +1,387 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+
+/**
+ * Collects single key lookups from many threads and loads them with one query
+ * per batch. a batch is sent when it reaches the maximum size or when the
+ * window of its first key has passed, whichever comes first. the same key
+ * requested by several callers in a batch is loaded once.
+ *
+ * <pre>
+ * BatchLoader&lt;Long, Student&gt; students = new Student().loader(factory);
+ * Student student = students.get(id); // many threads, one IN (...) query.
+ * </pre>
+ *
+ * batches are loaded one at a time by a single thread, keys that arrive while
+ * a batch is loading are collected in the next batch.
+ *
+ * @author Jhon Melvin
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+public class BatchLoader<K, V> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchLoader.class.getName());
+
+    /**
+     * Loads the values of many keys at once.
+     *
+     * @param <K>
+     * @param <V>
+     */
+    @FunctionalInterface
+    public interface BatchFunction<K, V> {
+
+        /**
+         * Loads a batch.
+         *
+         * @param keys distinct keys.
+         * @return the values by key, keys that are not found are left out.
+         * @throws SQLException
+         */
+        Map<K, V> load(List<K> keys) throws SQLException;
+    }
+
+    /**
+     * Queued lookup.
+     *
+     * @param <K>
+     * @param <V>
+     */
+    private static class Request<K, V> {
+
+        private final K key;
+        private final CompletableFuture<V> future;
+        private final long enqueued;
+
+        private Request(K key) {
+            this.key = key;
+            this.future = new CompletableFuture<>();
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    private final BatchFunction<K, V> function;
+    /**
+     * Marker that stops the loader thread.
+     */
+    private final Request<K, V> stop;
+    private final BlockingQueue<Request<K, V>> queue;
+    private final Thread loaderThread;
+    private boolean closed;
+    private volatile int maxBatchSize;
+    private volatile long window;
+    //--------------------------------------------------------------------------
+    private final long created;
+    private final AtomicLong batchCount;
+    private final AtomicLong keyCount;
+    private final AtomicLong requestCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong totalLatency;
+    private final AtomicLong maxLatency;
+    private final AtomicLong totalLoadTime;
+
+    /**
+     * Constructor, the loader thread is started right away.
+     *
+     * @param function
+     */
+    public BatchLoader(BatchFunction<K, V> function) {
+        this.function = function;
+        this.stop = new Request<>(null);
+        this.queue = new LinkedBlockingQueue<>();
+        this.maxBatchSize = 100;
+        this.window = TimeUnit.MILLISECONDS.toNanos(2);
+        //----------------------------------------------------------------------
+        this.created = System.nanoTime();
+        this.batchCount = new AtomicLong();
+        this.keyCount = new AtomicLong();
+        this.requestCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.totalLatency = new AtomicLong();
+        this.maxLatency = new AtomicLong();
+        this.totalLoadTime = new AtomicLong();
+        //----------------------------------------------------------------------
+        this.loaderThread = new Thread(this::loadLoop, "polaris-batch-loader");
+        this.loaderThread.setDaemon(true);
+        this.loaderThread.start();
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Maximum number of keys in one query. default is 100, keep it below the
+     * parameter limit of the database (999 for older SQLITE).
+     *
+     * @param maxBatchSize
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * How long the first key of a batch waits for more keys. default is 2
+     * milliseconds, this is added to the latency of a lookup when the loader
+     * is not busy.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void setWindow(long duration, TimeUnit unit) {
+        this.window = Math.max(0, unit.toNanos(duration));
+    }
+
+    //--------------------------------------------------------------------------
+    // Lookups.
+    //--------------------------------------------------------------------------
+    /**
+     * Queues a lookup.
+     *
+     * @param key
+     * @return completes with the value or null if the key was not found.
+     */
+    public CompletableFuture<V> load(K key) {
+        if (key == null) {
+            throw new NullPointerException("Key must not be null");
+        }
+        Request<K, V> request = new Request<>(key);
+        synchronized (this.queue) {
+            if (this.closed) {
+                throw new PolarisRuntimeException("The batch loader is closed.");
+            }
+            this.queue.add(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * Queues a lookup and waits for it.
+     *
+     * @param key
+     * @return the value or null if the key was not found.
+     * @throws SQLException
+     */
+    public V get(K key) throws SQLException {
+        try {
+            return this.load(key).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a batch.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                throw new SQLException(sqlException.getMessage(), sqlException.getSQLState(),
+                        sqlException.getErrorCode(), sqlException);
+            }
+            throw new PolarisRuntimeException("Batch load failed.", cause);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Loader Thread.
+    //--------------------------------------------------------------------------
+    private void loadLoop() {
+        List<Request<K, V>> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                Request<K, V> first = this.queue.take();
+                if (first == this.stop) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = first.enqueued + this.window;
+                while (batch.size() < this.maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Request<K, V> next = wait > 0
+                            ? this.queue.poll(wait, TimeUnit.NANOSECONDS)
+                            : this.queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == this.stop) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                this.loadBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                for (Request<K, V> request : batch) {
+                    if (!request.future.isDone()) {
+                        request.future.completeExceptionally(new PolarisRuntimeException("The batch loader is closed."));
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void loadBatch(List<Request<K, V>> batch) {
+        // group the callers of the same key.
+        Map<K, List<Request<K, V>>> callers = new LinkedHashMap<>();
+        for (Request<K, V> request : batch) {
+            callers.computeIfAbsent(request.key, k -> new ArrayList<>(1)).add(request);
+        }
+        long start = System.nanoTime();
+        Map<K, V> values = null;
+        Throwable error = null;
+        try {
+            values = this.function.load(new ArrayList<>(callers.keySet()));
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Batch load failed.", e);
+            error = e;
+        }
+        long end = System.nanoTime();
+        //----------------------------------------------------------------------
+        this.batchCount.incrementAndGet();
+        this.keyCount.addAndGet(callers.size());
+        this.requestCount.addAndGet(batch.size());
+        this.totalLoadTime.addAndGet(end - start);
+        for (Request<K, V> request : batch) {
+            long latency = end - request.enqueued;
+            this.totalLatency.addAndGet(latency);
+            this.maxLatency.accumulateAndGet(latency, Math::max);
+            if (error == null) {
+                request.future.complete(values == null ? null : values.get(request.key));
+            } else {
+                this.failedCount.incrementAndGet();
+                request.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Loads the queued keys and stops the loader thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this.queue) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.queue.add(this.stop);
+        }
+        try {
+            this.loaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Statistics.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @return the number of queries sent.
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     *
+     * @return the number of lookups answered.
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     *
+     * @return the number of lookups that failed.
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     *
+     * @return average distinct keys per query.
+     */
+    public double getAverageBatchSize() {
+        long batches = this.batchCount.get();
+        return batches == 0 ? 0 : (double) this.keyCount.get() / batches;
+    }
+
+    /**
+     *
+     * @return average time from a lookup to its answer in nanoseconds.
+     */
+    public long getAverageLatency() {
+        long requests = this.requestCount.get();
+        return requests == 0 ? 0 : this.totalLatency.get() / requests;
+    }
+
+    /**
+     *
+     * @return the longest time from a lookup to its answer in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return this.maxLatency.get();
+    }
+
+    /**
+     *
+     * @return average time of a batch query in nanoseconds.
+     */
+    public long getAverageLoadTime() {
+        long batches = this.batchCount.get();
+        return batches == 0 ? 0 : this.totalLoadTime.get() / batches;
+    }
+
+    /**
+     *
+     * @return lookups answered per second since the loader was created.
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - this.created) / 1e9;
+        return seconds <= 0 ? 0 : this.requestCount.get() / seconds;
+    }
+
+}
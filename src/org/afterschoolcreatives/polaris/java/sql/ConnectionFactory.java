@@ -29,6 +29,7 @@ import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
 
 /**
@@ -93,6 +94,41 @@ public class ConnectionFactory {
      */
     private String SQLiteURL;
 
+    /**
+     * Default query timeout in seconds of created managers. 0 means no limit.
+     */
+    private int queryTimeout;
+
+    /**
+     * Apply the SQLITE tuning pragmas to new connections.
+     */
+    private boolean SQLiteTuned;
+
+    /**
+     * Tracks the created managers, null for none.
+     */
+    private LeakDetector leakDetector;
+
+    /**
+     * Adaptive fetch size of created managers, null for none.
+     */
+    private FetchSizeAdvisor fetchSizeAdvisor;
+
+    /**
+     * Default result limit of created managers.
+     */
+    private ResultLimit resultLimit;
+
+    /**
+     * Allow several statements in one query for MySQL and MariaDB.
+     */
+    private boolean multiStatements;
+
+    /**
+     * Receives the statements of created managers, null for none.
+     */
+    private QueryListener queryListener;
+
     /**
      * Default Constructor.
      */
@@ -172,6 +208,83 @@ public class ConnectionFactory {
         this.SQLiteURL = sqliteUrl;
     }
 
+    /**
+     * Default statement timeout of every connection manager created by this
+     * factory.
+     *
+     * @param seconds 0 for no limit.
+     */
+    public void setQueryTimeout(int seconds) {
+        this.queryTimeout = seconds;
+    }
+
+    /**
+     * Tracks every connection manager created by this factory to find the
+     * ones that are never closed.
+     *
+     * @param leakDetector null to stop tracking new managers.
+     */
+    public void setLeakDetector(LeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+    }
+
+    /**
+     * Gives every created manager the advisor so large SELECT results are
+     * streamed in round trips of a bounded size instead of being buffered by
+     * the driver. for MySQL the connection URL enables server side cursors
+     * (useCursorFetch), MariaDB streams with a positive fetch size and
+     * PostgreSQL needs a read transaction, see
+     * FetchSizeAdvisor#setReadTransaction(boolean).
+     *
+     * @param fetchSizeAdvisor null for the driver default.
+     */
+    public void setFetchSizeAdvisor(FetchSizeAdvisor fetchSizeAdvisor) {
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+    }
+
+    /**
+     * Default maximum size of fetch results for every created manager.
+     *
+     * @see ConnectionManager#setResultLimit(ResultLimit)
+     * @param resultLimit null for no limit.
+     */
+    public void setResultLimit(ResultLimit resultLimit) {
+        this.resultLimit = resultLimit;
+    }
+
+    /**
+     * Enables multi statement queries (allowMultiQueries) on MySQL and MariaDB
+     * so pipelines are sent in one round trip. PostgreSQL does not need it and
+     * SQLITE pipelines always run one statement at a time.
+     *
+     * @see ConnectionManager#pipeline()
+     * @param multiStatements
+     */
+    public void setMultiStatements(boolean multiStatements) {
+        this.multiStatements = multiStatements;
+    }
+
+    /**
+     * Hook that receives every statement of the created managers, for
+     * example a QueryRecorder.
+     *
+     * @param queryListener null for none.
+     */
+    public void setQueryListener(QueryListener queryListener) {
+        this.queryListener = queryListener;
+    }
+
+    /**
+     * When using SQLITE switch the database to write ahead logging and apply
+     * the tuning pragmas to every new connection.
+     *
+     * @see ConnectionFactory#tuneSQLite(java.sql.Connection)
+     * @param tuned
+     */
+    public void setSQLiteTuned(boolean tuned) {
+        this.SQLiteTuned = tuned;
+    }
+
     //--------------------------------------------------------------------------
     // Class Getters
     //--------------------------------------------------------------------------
@@ -217,9 +330,18 @@ public class ConnectionFactory {
         }
         switch (this.connectionDriver) {
             case MariaDB:
-                return "jdbc:mariadb://" + this.host + ":" + this.port + "/" + this.databaseName;
+                return "jdbc:mariadb://" + this.host + ":" + this.port + "/" + this.databaseName
+                        + (this.multiStatements ? "?allowMultiQueries=true" : "");
             case MySQL:
-                return "jdbc:mysql://" + this.host + ":" + this.port + "/" + this.databaseName;
+                StringBuilder options = new StringBuilder();
+                if (this.fetchSizeAdvisor != null) {
+                    options.append("&useCursorFetch=true");
+                }
+                if (this.multiStatements) {
+                    options.append("&allowMultiQueries=true");
+                }
+                return "jdbc:mysql://" + this.host + ":" + this.port + "/" + this.databaseName
+                        + (options.length() == 0 ? "" : "?" + options.substring(1));
             case PostgreSQL:
                 return "jdbc:postgresql://" + this.host + ":" + this.port + "/" + this.databaseName;
             case SQLite:
@@ -247,6 +369,9 @@ public class ConnectionFactory {
             Connection sqliteConnection = DriverManager
                     .getConnection(this.createUrl());
             sqliteConnection.setAutoCommit(true);
+            if (this.SQLiteTuned) {
+                ConnectionFactory.tuneSQLite(sqliteConnection);
+            }
             return sqliteConnection;
         }
         //----------------------------------------------------------------------
@@ -263,6 +388,25 @@ public class ConnectionFactory {
         return newConnection;
     }
 
+    /**
+     * Applies the SQLITE settings for concurrent local databases. WAL lets
+     * readers work while a writer is active, NORMAL synchronous is still safe
+     * in WAL mode and the busy timeout makes contended connections wait
+     * instead of failing right away with SQLITE_BUSY.
+     *
+     * @param connection SQLITE connection.
+     * @throws SQLException
+     */
+    public static void tuneSQLite(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.execute("PRAGMA busy_timeout = 5000");
+            statement.execute("PRAGMA temp_store = MEMORY");
+            statement.execute("PRAGMA cache_size = -16000");
+        }
+    }
+
     /**
      * Create a connection manager instance.
      *
@@ -272,6 +416,14 @@ public class ConnectionFactory {
     public ConnectionManager createConnectionManager() throws SQLException {
         Connection connection = this.createConnection();
         ConnectionManager connectionManager = new ConnectionManager(this.connectionDriver, connection);
+        connectionManager.setQueryTimeout(this.queryTimeout);
+        connectionManager.setFetchSizeAdvisor(this.fetchSizeAdvisor);
+        connectionManager.setMultiStatements(this.multiStatements);
+        connectionManager.setQueryListener(this.queryListener);
+        connectionManager.setResultLimit(this.resultLimit);
+        if (this.leakDetector != null) {
+            connectionManager.trackLeaks(this.leakDetector);
+        }
         return connectionManager;
     }
 
@@ -25,12 +25,20 @@
  */
 package org.afterschoolcreatives.polaris.java.sql;
 
+import org.afterschoolcreatives.polaris.java.sql.builder.KeysetQuery;
 import org.afterschoolcreatives.polaris.java.sql.builder.QueryBuilder;
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinders;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.exceptions.ResultTooLargeException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +60,52 @@ public class ConnectionManager implements AutoCloseable {
      */
     private final ConnectionFactory.Driver connectionDriver;
 
+    /**
+     * Default query timeout in seconds for every statement. 0 means no limit.
+     */
+    private int queryTimeout;
+
+    /**
+     * Query timeout in seconds for the next statement only.
+     */
+    private int callTimeout;
+
+    /**
+     * Shared time budget of the following statements.
+     */
+    private Deadline deadline;
+
+    /**
+     * The statement being executed, used for cancellation from other threads.
+     */
+    private volatile Statement currentStatement;
+
+    /**
+     * Leak tracking record, null when the factory has no leak detector.
+     */
+    private LeakDetector.Tracker leakTracker;
+
+    /**
+     * Chooses the fetch size of SELECT statements, null to use the driver
+     * default.
+     */
+    private FetchSizeAdvisor fetchSizeAdvisor;
+
+    /**
+     * The connection accepts several statements in one query string.
+     */
+    private boolean multiStatements;
+
+    /**
+     * Receives every executed statement, null for none.
+     */
+    private QueryListener queryListener;
+
+    /**
+     * Maximum size of the results of fetch.
+     */
+    private ResultLimit resultLimit = ResultLimit.NONE;
+
     /**
      * Constructor with passed connection instance.
      *
@@ -67,6 +121,208 @@ public class ConnectionManager implements AutoCloseable {
         return connectionDriver;
     }
 
+    /**
+     * Adaptive fetch size of SELECT statements. on PostgreSQL the results are
+     * only streamed outside auto commit, a SELECT in auto commit mode is run
+     * in its own read transaction if the advisor allows it.
+     *
+     * @param fetchSizeAdvisor null for the driver default.
+     */
+    public void setFetchSizeAdvisor(FetchSizeAdvisor fetchSizeAdvisor) {
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+    }
+
+    public FetchSizeAdvisor getFetchSizeAdvisor() {
+        return fetchSizeAdvisor;
+    }
+
+    /**
+     * Default maximum rows and estimated bytes of the results of fetch, a
+     * larger result throws ResultTooLargeException while it is being read.
+     * fetchEach is not limited since it does not keep the rows.
+     *
+     * @param resultLimit null for no limit.
+     */
+    public void setResultLimit(ResultLimit resultLimit) {
+        this.resultLimit = resultLimit == null ? ResultLimit.NONE : resultLimit;
+    }
+
+    public ResultLimit getResultLimit() {
+        return resultLimit;
+    }
+
+    /**
+     * Set by the connection factory when the URL enables multi statement
+     * queries.
+     *
+     * @param multiStatements
+     */
+    void setMultiStatements(boolean multiStatements) {
+        this.multiStatements = multiStatements;
+    }
+
+    /**
+     * Whether a pipeline can send its queries in one round trip. PostgreSQL
+     * always can, MySQL and MariaDB need allowMultiQueries in the URL and
+     * MySQL cannot while cursor fetching is on since server prepared
+     * statements hold a single statement.
+     *
+     * @return
+     */
+    boolean supportsMultiStatements() {
+        switch (this.connectionDriver) {
+            case PostgreSQL:
+                return true;
+            case MariaDB:
+                return this.multiStatements;
+            case MySQL:
+                return this.multiStatements && this.fetchSizeAdvisor == null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Hook that receives every statement executed by this manager.
+     *
+     * @param queryListener null to remove.
+     */
+    public void setQueryListener(QueryListener queryListener) {
+        this.queryListener = queryListener;
+    }
+
+    private void record(QueryListener.Kind kind, String query, Object[] parameters, long start, boolean success) {
+        QueryListener listener = this.queryListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.executed(kind, query, parameters, System.nanoTime() - start, success);
+        } catch (RuntimeException e) {
+            // a broken listener must not fail the statement.
+            LOGGER.log(Level.WARNING, "Query listener failed -> {0}", e.toString());
+        }
+    }
+
+    /**
+     * Registers this manager to a leak detector.
+     *
+     * @param detector
+     */
+    void trackLeaks(LeakDetector detector) {
+        this.leakTracker = detector.track(this, this.connection);
+    }
+
+    //--------------------------------------------------------------------------
+    // Timeout Methods.
+    //--------------------------------------------------------------------------
+    /**
+     * Default timeout of every statement of this manager.
+     *
+     * @param seconds 0 for no limit.
+     */
+    public void setQueryTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new PolarisRuntimeException("Query timeout cannot be negative.");
+        }
+        this.queryTimeout = seconds;
+    }
+
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Overrides the default timeout for the next statement only.
+     *
+     * <pre>
+     * con.withTimeout(5, TimeUnit.SECONDS).fetch("SELECT ...");
+     * </pre>
+     *
+     * @param duration
+     * @param unit
+     * @return this manager.
+     */
+    public ConnectionManager withTimeout(long duration, TimeUnit unit) {
+        long millis = unit.toMillis(duration);
+        if (millis <= 0) {
+            throw new PolarisRuntimeException("Query timeout must be positive.");
+        }
+        this.callTimeout = (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+        return this;
+    }
+
+    /**
+     * Every following statement is limited to the time left in the deadline.
+     * statements executed after the deadline has passed fail with
+     * SQLTimeoutException without reaching the database.
+     *
+     * @param deadline null to remove.
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Cancels the statement currently executed by this manager. this is meant
+     * to be called from another thread, the executing call fails with an
+     * SQLException.
+     *
+     * @return false if there is no running statement.
+     * @throws SQLException
+     */
+    public boolean cancelCurrent() throws SQLException {
+        Statement statement = this.currentStatement;
+        if (statement == null) {
+            return false;
+        }
+        try {
+            statement.cancel();
+            return true;
+        } catch (SQLException e) {
+            // the statement may have completed and closed meanwhile.
+            if (statement.isClosed()) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a statement with the effective timeout and registers it as the
+     * current statement.
+     *
+     * @param query
+     * @param generatedKeys
+     * @return
+     * @throws SQLException
+     */
+    private PreparedStatement prepare(String query, boolean generatedKeys) throws SQLException {
+        int timeout = this.callTimeout > 0 ? this.callTimeout : this.queryTimeout;
+        this.callTimeout = 0;
+        if (this.deadline != null) {
+            int remaining = this.deadline.toQueryTimeout();
+            timeout = timeout == 0 ? remaining : Math.min(timeout, remaining);
+        }
+        PreparedStatement preparedStatement = generatedKeys
+                ? this.connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+                : this.connection.prepareStatement(query);
+        if (timeout > 0) {
+            preparedStatement.setQueryTimeout(timeout);
+        }
+        this.currentStatement = preparedStatement;
+        return preparedStatement;
+    }
+
+    private void release(PreparedStatement preparedStatement) throws SQLException {
+        this.currentStatement = null;
+        preparedStatement.close();
+    }
+
     //--------------------------------------------------------------------------
     // Implemented Methods.
     //--------------------------------------------------------------------------
@@ -74,10 +330,16 @@ public class ConnectionManager implements AutoCloseable {
     public void close() throws SQLException {
         // if not auto commit
         // rollback before closing
-        if (!this.connection.getAutoCommit()) {
-            this.connection.rollback();
+        try {
+            if (!this.connection.getAutoCommit()) {
+                this.connection.rollback();
+            }
+            this.connection.close();
+        } finally {
+            if (this.leakTracker != null) {
+                this.leakTracker.release();
+            }
         }
-        this.connection.close();
     }
 
     public void closeQuietly() {
@@ -98,7 +360,10 @@ public class ConnectionManager implements AutoCloseable {
      * @throws java.sql.SQLException
      */
     public void transactionStart() throws SQLException {
-        this.connection.rollback();
+        // nothing to rollback in auto commit, some drivers throws on it.
+        if (!this.connection.getAutoCommit()) {
+            this.connection.rollback();
+        }
         this.connection.setAutoCommit(false);
     }
 
@@ -194,18 +459,15 @@ public class ConnectionManager implements AutoCloseable {
     /**
      * PRIVATE STATIC METHOD.
      *
-     * inserts parameters to a prepared statement.
+     * inserts parameters to a prepared statement. each parameter is bound
+     * with the setter of its type instead of setObject.
      *
      * @param preparedStatement
      * @param parameters
      * @throws SQLException
      */
     private static void insertPreparedParameters(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
-        if (parameters != null) {
-            for (int index = 1; index <= parameters.length; index++) {
-                preparedStatement.setObject(index, parameters[index - 1]);
-            }
-        }
+        ParameterBinders.bindAll(preparedStatement, parameters);
     }
 
     /**
@@ -217,41 +479,50 @@ public class ConnectionManager implements AutoCloseable {
      * Used this in your SELECT queries.
      *
      * @param preparedStatement
+     * @param limit stops reading when the result passes it.
      * @return
      * @throws SQLException
      */
-    private static DataSet formatResultSet(ResultSet resultSet) throws SQLException {
+    private static DataSet formatResultSet(ResultSet resultSet, ResultLimit limit) throws SQLException {
+        ResultMemory.Tracker tracker = ResultMemory.track();
+        // the size estimate is only needed for a byte limit or the accounting.
+        boolean estimate = tracker != null || limit.getMaxBytes() != Long.MAX_VALUE;
+        boolean limited = !limit.isUnlimited();
         try {
             // create blank data set.
             DataSet dataSet = new DataSet();
+            //------------------------------------------------------------------
+            // Read the column labels once for all the rows.
+            String[] columnLabels = ConnectionManager.readColumnLabels(resultSet);
+            //------------------------------------------------------------------
             // iterate over the result set
+            long bytes = 0;
             while (resultSet.next()) {
-                //--------------------------------------------------------------
-                // Get Column Count
-                int rowSize = resultSet.getMetaData().getColumnCount();
-                //--------------------------------------------------------------
-                // create data row with initial capacity.
-                DataRow row = new DataRow(rowSize);
-                // fill up the row with the data.
-                for (int index = 1; index <= rowSize; index++) {
-                    // iterate over this row data
-                    //----------------------------------------------------------
-                    // Get Column Name
-                    String columnName = resultSet.getMetaData().getColumnLabel(index);
-                    //--------------------------------------------------------------
-                    // get column value
-                    Object columnValue = resultSet.getObject(index);
-                    // add to row.
-                    row.put(columnName, columnValue);
-                }
-                //--------------------------------------------------------------
+                DataRow row = ConnectionManager.readRow(resultSet, columnLabels);
                 // add to dataSet.
                 dataSet.add(row);
-                //--------------------------------------------------------------
+                if (estimate) {
+                    long size = row.estimateSize();
+                    bytes += size;
+                    if (tracker != null) {
+                        tracker.add(size);
+                    }
+                }
+                if (limited) {
+                    try {
+                        limit.check(dataSet.size(), bytes);
+                    } catch (ResultTooLargeException e) {
+                        ResultMemory.rejected();
+                        throw e;
+                    }
+                }
             }
             //------------------------------------------------------------------
             return dataSet; // return the data set.
         } finally {
+            if (tracker != null) {
+                tracker.release();
+            }
             //------------------------------------------------------------------
             // Close ResultSet
             if (resultSet != null) {
@@ -262,6 +533,44 @@ public class ConnectionManager implements AutoCloseable {
 
     }
 
+    /**
+     * PRIVATE STATIC METHOD.
+     *
+     * Reads the column labels of a result set.
+     *
+     * @param resultSet
+     * @return
+     * @throws SQLException
+     */
+    private static String[] readColumnLabels(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        String[] columnLabels = new String[metaData.getColumnCount()];
+        for (int index = 1; index <= columnLabels.length; index++) {
+            columnLabels[index - 1] = metaData.getColumnLabel(index);
+        }
+        return columnLabels;
+    }
+
+    /**
+     * PRIVATE STATIC METHOD.
+     *
+     * Reads the current row of the result set.
+     *
+     * @param resultSet
+     * @param columnLabels
+     * @return
+     * @throws SQLException
+     */
+    private static DataRow readRow(ResultSet resultSet, String[] columnLabels) throws SQLException {
+        // create data row with initial capacity.
+        DataRow row = new DataRow(columnLabels.length);
+        // fill up the row with the data.
+        for (int index = 1; index <= columnLabels.length; index++) {
+            row.put(columnLabels[index - 1], resultSet.getObject(index));
+        }
+        return row;
+    }
+
     /**
      * Inserts a new Record to the database.
      *
@@ -275,12 +584,15 @@ public class ConnectionManager implements AutoCloseable {
     @SuppressWarnings(value = "SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
     public <T> T insert(String query, Object... parameters) throws SQLException {
         PreparedStatement preparedStatement = null;
+        long start = System.nanoTime();
+        boolean success = false;
         try {
             // added return generated key constant
-            preparedStatement = this.connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+            preparedStatement = this.prepare(query, true);
             ConnectionManager.insertPreparedParameters(preparedStatement, parameters);
             //------------------------------------------------------------------
             preparedStatement.executeUpdate(); // ignore results
+            success = true;
             //------------------------------------------------------------------
             // Get Generated Keys.
             //------------------------------------------------------------------
@@ -311,8 +623,9 @@ public class ConnectionManager implements AutoCloseable {
         } finally {
             //--------------------------------------------------------------
             if (preparedStatement != null) {
-                preparedStatement.close();
+                this.release(preparedStatement);
             }
+            this.record(QueryListener.Kind.INSERT, query, parameters, start, success);
             //--------------------------------------------------------------
         }
     }
@@ -357,18 +670,22 @@ public class ConnectionManager implements AutoCloseable {
     @SuppressWarnings(value = "SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
     public int update(String query, Object... parameters) throws SQLException {
         PreparedStatement preparedStatement = null;
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            preparedStatement = this.connection.prepareStatement(query);
+            preparedStatement = this.prepare(query, false);
             ConnectionManager.insertPreparedParameters(preparedStatement, parameters);
             //------------------------------------------------------------------
             int result = preparedStatement.executeUpdate();
+            success = true;
             //------------------------------------------------------------------
             return result;
         } finally {
             //--------------------------------------------------------------
             if (preparedStatement != null) {
-                preparedStatement.close();
+                this.release(preparedStatement);
             }
+            this.record(QueryListener.Kind.UPDATE, query, parameters, start, success);
             //--------------------------------------------------------------
         }
     }
@@ -392,46 +709,351 @@ public class ConnectionManager implements AutoCloseable {
      * @param parameters parameters
      * @return Data Set Object containing the results.
      */
-    @SuppressWarnings(value = "SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
     public DataSet fetch(String query, Object... parameters) throws SQLException {
+        return this.fetch(this.resultLimit, query, parameters);
+    }
+
+    /**
+     * Execute SELECT operations with a result limit for this call only.
+     *
+     * @param limit maximum size of the result.
+     * @param query SQL Statement.
+     * @param parameters parameters
+     * @return Data Set Object containing the results.
+     * @throws SQLException
+     * @throws ResultTooLargeException when the result passes the limit.
+     */
+    public DataSet fetch(ResultLimit limit, String query, Object... parameters) throws SQLException {
+        final ResultLimit callLimit = limit == null ? ResultLimit.NONE : limit;
+        return this.fetchResultSet(query, resultSet -> ConnectionManager.formatResultSet(resultSet, callLimit), parameters);
+    }
+
+    /**
+     * Execute SELECT operations, rows after the limit are written to a
+     * temporary file instead of failing. close the returned set.
+     *
+     * @see SpillDataSet
+     * @param limit rows and estimated bytes kept in memory.
+     * @param query SQL Statement.
+     * @param parameters parameters
+     * @return the result, in memory up to the limit.
+     * @throws SQLException
+     */
+    public SpillDataSet fetchSpilling(ResultLimit limit, String query, Object... parameters) throws SQLException {
+        long rows = Math.min(limit.getMaxRows(), Integer.MAX_VALUE);
+        SpillDataSet result = new SpillDataSet(limit.getMaxBytes(), (int) rows);
+        try {
+            this.fetchEach(query, result, parameters);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Execute Fetch Operations.
+     *
+     * @see ConnectionManager#fetch(java.lang.String, java.lang.Object...)
+     *
+     * @param builder
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetch(QueryBuilder builder) throws SQLException {
+        return this.fetch(builder.getQueryString(), builder.getParameters());
+    }
+
+    /**
+     * Execute SELECT operations and pass the rows to the handler one at a
+     * time. the rows are not collected so the result can be larger than the
+     * memory.
+     *
+     * @param query SQL Statement.
+     * @param handler receives each row.
+     * @param parameters parameters
+     * @return the number of rows read.
+     * @throws SQLException
+     */
+    public long fetchEach(String query, RowHandler handler, Object... parameters) throws SQLException {
+        return this.fetchResultSet(query, resultSet -> {
+            String[] columnLabels = ConnectionManager.readColumnLabels(resultSet);
+            long count = 0;
+            while (resultSet.next()) {
+                handler.handle(ConnectionManager.readRow(resultSet, columnLabels));
+                count++;
+            }
+            return count;
+        }, parameters);
+    }
+
+    /**
+     * Execute SELECT operations and read the result set directly. the result
+     * set and the statement are closed when the handler returns.
+     *
+     * @param <T>
+     * @param query SQL Statement.
+     * @param handler reads the result set.
+     * @param parameters parameters
+     * @return the value returned by the handler.
+     * @throws SQLException
+     */
+    @SuppressWarnings(value = "SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
+    public <T> T fetchResultSet(String query, ResultSetHandler<T> handler, Object... parameters) throws SQLException {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
+        boolean readTransaction = false;
+        long start = System.nanoTime();
+        boolean success = false;
+        Throwable failure = null;
         try {
-            preparedStatement = this.connection.prepareStatement(query/*,
-                    ResultSet.TYPE_SCROLL_INSENSITIVE,
-                    ResultSet.CONCUR_READ_ONLY*/);
+            preparedStatement = this.prepare(query, false);
             //----------------------------------------------------------------------
             ConnectionManager.insertPreparedParameters(preparedStatement, parameters);
+            if (this.fetchSizeAdvisor != null) {
+                readTransaction = this.applyFetchSize(preparedStatement, query);
+            }
             //----------------------------------------------------------------------
             resultSet = preparedStatement.executeQuery();
-            DataSet resultList = ConnectionManager.formatResultSet(resultSet);
-            //----------------------------------------------------------------------
-            return resultList;
+            if (this.fetchSizeAdvisor != null && this.fetchSizeAdvisor.getFetchSize(query) == 0) {
+                this.fetchSizeAdvisor.learn(query, resultSet.getMetaData());
+            }
+            T result = handler.handle(resultSet);
+            success = true;
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
         } finally {
             //--------------------------------------------------------------
-            // close result set
-            if (resultSet != null) {
-                resultSet.close();
+            try {
+                // close result set
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                // close statement.
+                if (preparedStatement != null) {
+                    this.release(preparedStatement);
+                }
+            } finally {
+                if (readTransaction) {
+                    try {
+                        this.endReadTransaction(success);
+                    } catch (SQLException e) {
+                        if (failure == null) {
+                            throw e;
+                        }
+                        failure.addSuppressed(e); // keep the original error.
+                    }
+                }
+                this.record(QueryListener.Kind.FETCH, query, parameters, start, success);
             }
-            // close statement.
+            //--------------------------------------------------------------
+        }
+    }
+
+    /**
+     * Sets the fetch size of the statement from the advisor, the statement
+     * meta data is used when the query was never executed.
+     *
+     * @param preparedStatement
+     * @param query
+     * @return true if a read transaction was started for PostgreSQL.
+     * @throws SQLException
+     */
+    private boolean applyFetchSize(PreparedStatement preparedStatement, String query) throws SQLException {
+        int fetchSize = this.fetchSizeAdvisor.getFetchSize(query);
+        if (fetchSize == 0) {
+            ResultSetMetaData metaData = null;
+            try {
+                metaData = preparedStatement.getMetaData();
+            } catch (SQLException e) {
+                // the driver cannot describe the result before executing.
+            }
+            fetchSize = metaData == null
+                    ? this.fetchSizeAdvisor.getInitialFetchSize()
+                    : this.fetchSizeAdvisor.learn(query, metaData);
+        }
+        preparedStatement.setFetchSize(fetchSize);
+        //----------------------------------------------------------------------
+        // PostgreSQL only uses a cursor outside auto commit.
+        if (this.connectionDriver == ConnectionFactory.Driver.PostgreSQL
+                && this.fetchSizeAdvisor.isReadTransaction()
+                && this.connection.getAutoCommit()) {
+            this.connection.setAutoCommit(false);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends the read transaction started by applyFetchSize, a failed fetch is
+     * rolled back since the transaction may be aborted.
+     *
+     * @param commit
+     * @throws SQLException
+     */
+    private void endReadTransaction(boolean commit) throws SQLException {
+        try {
+            if (commit) {
+                this.connection.commit();
+            } else {
+                this.connection.rollback();
+            }
+        } finally {
+            this.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Fetch a page using keyset pagination.
+     *
+     * @param query keyset query, the ordering columns must be selected.
+     * @return the rows of the page with the continuation token of the next
+     * page.
+     * @throws SQLException
+     */
+    public Page<DataRow> fetchPage(KeysetQuery query) throws SQLException {
+        // the query returns one extra row when there is a next page.
+        DataSet ds = this.fetch(query);
+        boolean hasNext = ds.size() > query.getPageSize();
+        if (hasNext) {
+            ds.remove(ds.size() - 1);
+        }
+        Object[] lastKey = ds.isEmpty() ? null : query.readKey(ds.get(ds.size() - 1)::get);
+        return new Page<>(ds, lastKey, hasNext);
+    }
+
+    /**
+     * Creates a pipeline that sends several SELECT statements together.
+     *
+     * @return
+     */
+    public Pipeline pipeline() {
+        return new Pipeline(this);
+    }
+
+    /**
+     * Executes a query string holding several statements and reads every
+     * result set.
+     *
+     * @param query statements separated by semicolons.
+     * @param parameters parameters of all statements in order.
+     * @param expected number of result sets.
+     * @return one data set per statement.
+     * @throws SQLException
+     */
+    @SuppressWarnings(value = "SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
+    List<DataSet> fetchMultiple(String query, Object[] parameters, int expected) throws SQLException {
+        PreparedStatement preparedStatement = null;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            preparedStatement = this.prepare(query, false);
+            ConnectionManager.insertPreparedParameters(preparedStatement, parameters);
+            //------------------------------------------------------------------
+            List<DataSet> results = new ArrayList<>(expected);
+            boolean isResultSet = preparedStatement.execute();
+            while (isResultSet || preparedStatement.getUpdateCount() != -1) {
+                if (isResultSet) {
+                    try (ResultSet resultSet = preparedStatement.getResultSet()) {
+                        results.add(ConnectionManager.formatResultSet(resultSet, this.resultLimit));
+                    }
+                }
+                isResultSet = preparedStatement.getMoreResults();
+            }
+            //------------------------------------------------------------------
+            if (results.size() != expected) {
+                throw new SQLException("Expected " + expected + " results but the database returned " + results.size());
+            }
+            success = true;
+            return results;
+        } finally {
             if (preparedStatement != null) {
-                preparedStatement.close();
+                this.release(preparedStatement);
             }
-            //--------------------------------------------------------------
+            this.record(QueryListener.Kind.FETCH, query, parameters, start, success);
         }
     }
 
     /**
-     * Execute Fetch Operations.
+     * Same as fetchEach but BLOB, CLOB and long binary or text columns are not
+     * read into the row. the row contains a {@link LobValue} for these columns
+     * that opens a stream over the column, so large values can be copied with
+     * a small buffer. the LOB values can only be read inside the handler.
      *
-     * @see ConnectionManager#fetch(java.lang.String, java.lang.Object...)
+     * @param query SQL Statement.
+     * @param handler receives each row.
+     * @param parameters parameters
+     * @return the number of rows read.
+     * @throws SQLException
+     */
+    public long fetchEachStreaming(String query, RowHandler handler, Object... parameters) throws SQLException {
+        return this.fetchResultSet(query, resultSet -> {
+            String[] columnLabels = ConnectionManager.readColumnLabels(resultSet);
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int[] sqlTypes = new int[columnLabels.length];
+            for (int index = 1; index <= sqlTypes.length; index++) {
+                sqlTypes[index - 1] = metaData.getColumnType(index);
+            }
+            LobValue[] lobs = new LobValue[columnLabels.length];
+            long count = 0;
+            while (resultSet.next()) {
+                DataRow row = new DataRow(columnLabels.length);
+                for (int index = 1; index <= columnLabels.length; index++) {
+                    int sqlType = sqlTypes[index - 1];
+                    if (LobValue.isLob(sqlType)) {
+                        lobs[index - 1] = new LobValue(resultSet, index, LobValue.isCharacter(sqlType));
+                        row.put(columnLabels[index - 1], lobs[index - 1]);
+                    } else {
+                        row.put(columnLabels[index - 1], resultSet.getObject(index));
+                    }
+                }
+                try {
+                    handler.handle(row);
+                } finally {
+                    // the cursor moves, the streams are no longer valid.
+                    for (int index = 0; index < lobs.length; index++) {
+                        if (lobs[index] != null) {
+                            lobs[index].invalidate();
+                            lobs[index] = null;
+                        }
+                    }
+                }
+                count++;
+            }
+            return count;
+        }, parameters);
+    }
+
+    /**
+     * Execute a streaming fetch using a query builder.
+     *
+     * @see ConnectionManager#fetchEachStreaming(java.lang.String,
+     * org.afterschoolcreatives.polaris.java.sql.RowHandler, java.lang.Object...)
      *
      * @param builder
+     * @param handler
      * @return
      * @throws SQLException
      */
-    public DataSet fetch(QueryBuilder builder) throws SQLException {
-        return this.fetch(builder.getQueryString(), builder.getParameters());
+    public long fetchEachStreaming(QueryBuilder builder, RowHandler handler) throws SQLException {
+        return this.fetchEachStreaming(builder.getQueryString(), handler, builder.getParameters());
+    }
+
+    /**
+     * Execute Fetch Operations one row at a time.
+     *
+     * @see ConnectionManager#fetchEach(java.lang.String,
+     * org.afterschoolcreatives.polaris.java.sql.RowHandler, java.lang.Object...)
+     *
+     * @param builder
+     * @param handler
+     * @return
+     * @throws SQLException
+     */
+    public long fetchEach(QueryBuilder builder, RowHandler handler) throws SQLException {
+        return this.fetchEach(builder.getQueryString(), handler, builder.getParameters());
     }
 
     /**
@@ -0,0 +1,228 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index of data rows by the value of a column. created by
+ * DataSet.indexBy. when every value of the column is an integer type the
+ * index uses primitive long keys in an open addressing table instead of boxed
+ * keys in a HashMap.
+ *
+ * Integer types are compared by value, an index on an INT column can be
+ * searched with a Long and the other way around.
+ *
+ * @author Jhon Melvin
+ */
+public class DataIndex {
+
+    private final String column;
+    private final DataRow[] rows;
+    //--------------------------------------------------------------------------
+    // primitive mode.
+    private long[] keys;
+    private int[] heads; // first row + 1 of each slot, 0 when empty.
+    private int[] next; // next row + 1 with the same key, 0 at the end.
+    private int mask;
+    //--------------------------------------------------------------------------
+    // object mode.
+    private Map<Object, List<DataRow>> table;
+    //--------------------------------------------------------------------------
+    private final List<DataRow> nullRows;
+    private int keyCount;
+
+    /**
+     * Builds the index.
+     *
+     * @param rows
+     * @param column
+     */
+    DataIndex(List<DataRow> rows, String column) {
+        this.column = column;
+        this.rows = rows.toArray(new DataRow[rows.size()]);
+        this.nullRows = new ArrayList<>();
+        boolean integral = true;
+        for (DataRow row : this.rows) {
+            Object value = row.get(column);
+            if (value != null && !DataIndex.isIntegral(value)) {
+                integral = false;
+                break;
+            }
+        }
+        if (integral) {
+            this.buildPrimitive();
+        } else {
+            this.buildObject();
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    private static Object normalize(Object key) {
+        return DataIndex.isIntegral(key) ? (Object) ((Number) key).longValue() : key;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void buildPrimitive() {
+        int capacity = Integer.highestOneBit(Math.max(2, this.rows.length) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.heads = new int[capacity];
+        this.next = new int[this.rows.length];
+        this.mask = capacity - 1;
+        // walk backwards and prepend so each chain keeps the row order.
+        for (int index = this.rows.length - 1; index >= 0; index--) {
+            Object value = this.rows[index].get(this.column);
+            if (value == null) {
+                continue;
+            }
+            long key = ((Number) value).longValue();
+            int slot = this.slotOf(key);
+            if (this.heads[slot] == 0) {
+                this.keys[slot] = key;
+                this.keyCount++;
+            }
+            this.next[index] = this.heads[slot];
+            this.heads[slot] = index + 1;
+        }
+        for (DataRow row : this.rows) {
+            if (row.get(this.column) == null) {
+                this.nullRows.add(row);
+            }
+        }
+    }
+
+    /**
+     * Slot holding the key or the empty slot where it belongs.
+     */
+    private int slotOf(long key) {
+        int slot = DataIndex.mix(key) & this.mask;
+        while (this.heads[slot] != 0 && this.keys[slot] != key) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private void buildObject() {
+        this.table = new HashMap<>();
+        for (DataRow row : this.rows) {
+            Object value = row.get(this.column);
+            if (value == null) {
+                this.nullRows.add(row);
+            } else {
+                this.table.computeIfAbsent(DataIndex.normalize(value), k -> new ArrayList<>(1)).add(row);
+            }
+        }
+        this.keyCount = this.table.size();
+    }
+
+    //--------------------------------------------------------------------------
+    // Lookup Methods.
+    //--------------------------------------------------------------------------
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Number of distinct non null keys.
+     *
+     * @return
+     */
+    public int keyCount() {
+        return this.keyCount;
+    }
+
+    /**
+     * True if the index stores primitive keys.
+     *
+     * @return
+     */
+    public boolean isPrimitive() {
+        return this.table == null;
+    }
+
+    /**
+     * Rows having the key in their original order.
+     *
+     * @param key null returns the rows with a null value.
+     * @return an empty list when there are no rows.
+     */
+    public List<DataRow> get(Object key) {
+        if (key == null) {
+            return Collections.unmodifiableList(this.nullRows);
+        }
+        if (this.table != null) {
+            List<DataRow> found = this.table.get(DataIndex.normalize(key));
+            return found == null ? Collections.emptyList() : Collections.unmodifiableList(found);
+        }
+        if (!DataIndex.isIntegral(key)) {
+            return Collections.emptyList();
+        }
+        int row = this.heads[this.slotOf(((Number) key).longValue())];
+        if (row == 0) {
+            return Collections.emptyList();
+        }
+        List<DataRow> found = new ArrayList<>(1);
+        for (; row != 0; row = this.next[row - 1]) {
+            found.add(this.rows[row - 1]);
+        }
+        return found;
+    }
+
+    /**
+     * First row having the key.
+     *
+     * @param key
+     * @return null if there is none.
+     */
+    public DataRow first(Object key) {
+        if (key != null && this.table == null) {
+            if (!DataIndex.isIntegral(key)) {
+                return null;
+            }
+            int row = this.heads[this.slotOf(((Number) key).longValue())];
+            return row == 0 ? null : this.rows[row - 1];
+        }
+        List<DataRow> found = this.get(key);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public boolean contains(Object key) {
+        return this.first(key) != null;
+    }
+
+}
@@ -25,6 +25,8 @@
  */
 package org.afterschoolcreatives.polaris.java.sql;
 
+import java.math.BigDecimal;
+import java.util.Date;
 import java.util.HashMap;
 
 /**
@@ -65,6 +67,47 @@ public class DataRow extends HashMap<String, Object> {
         return (T) super.get(key);
     }
 
+    /**
+     * Rough estimate of the heap used by this row in bytes. counts the map
+     * table, one entry per column and the values, column labels are not
+     * counted since they are shared by all rows of a result.
+     *
+     * @return estimated size in bytes.
+     */
+    public long estimateSize() {
+        long size = 64 + 8L * this.size() * 2; // map header and table slots.
+        for (Object value : this.values()) {
+            size += 32 + DataRow.estimateValueSize(value); // entry node + value.
+        }
+        return size;
+    }
+
+    /**
+     * Rough estimate of the heap used by a column value.
+     *
+     * @param value
+     * @return
+     */
+    public static long estimateValueSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 0; // shared instances.
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof Integer || value instanceof Short
+                || value instanceof Byte || value instanceof Float
+                || value instanceof Character) {
+            return 16;
+        } else if (value instanceof Long || value instanceof Double
+                || value instanceof Date) {
+            return 24;
+        } else if (value instanceof BigDecimal) {
+            return 64 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+        }
+        return 48; // unknown objects.
+    }
+
     /**
      *
      * @param key
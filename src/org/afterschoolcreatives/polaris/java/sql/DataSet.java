@@ -26,6 +26,18 @@
 package org.afterschoolcreatives.polaris.java.sql;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 /**
  *
@@ -38,6 +50,12 @@ public class DataSet extends ArrayList<DataRow> {
      */
     private final static int INITIAL_CAPACITY = 50;
 
+    /**
+     * Sets with at least this number of rows are processed in parallel on the
+     * fork join common pool.
+     */
+    public final static int PARALLEL_THRESHOLD = 10000;
+
     /**
      * Serialization.
      */
@@ -47,4 +65,168 @@ public class DataSet extends ArrayList<DataRow> {
         super(DataSet.INITIAL_CAPACITY); // initial capacity.
     }
 
+    //--------------------------------------------------------------------------
+    // Operators.
+    //--------------------------------------------------------------------------
+    /**
+     * Sequential stream for small sets, parallel for large ones.
+     *
+     * @return
+     */
+    private Stream<DataRow> operatorStream() {
+        return this.size() >= PARALLEL_THRESHOLD ? this.parallelStream() : this.stream();
+    }
+
+    /**
+     * Builds a hash index of the rows by a column.
+     *
+     * @param column
+     * @return the index, it does not follow later changes of this set.
+     */
+    public DataIndex indexBy(String column) {
+        return new DataIndex(this, column);
+    }
+
+    /**
+     * Groups the rows by the value of a column and aggregates each group.
+     *
+     * @see Aggregators
+     * @param <R> aggregate type.
+     * @param column group column, null is a group too.
+     * @param aggregator collector applied to the rows of each group.
+     * @return groups in the order of their first row.
+     */
+    public <R> Map<Object, R> groupBy(String column, Collector<? super DataRow, ?, R> aggregator) {
+        return DataSet.group(this.operatorStream(), column, aggregator);
+    }
+
+    private static <A, R> Map<Object, R> group(Stream<DataRow> rows, String column, Collector<? super DataRow, A, R> aggregator) {
+        Supplier<A> supplier = aggregator.supplier();
+        BiConsumer<A, ? super DataRow> accumulator = aggregator.accumulator();
+        Function<A, R> finisher = aggregator.finisher();
+        // LinkedHashMap allows a null group unlike Collectors.groupingBy.
+        LinkedHashMap<Object, A> groups = rows.collect(LinkedHashMap::new,
+                (map, row) -> accumulator.accept(map.computeIfAbsent(row.get(column), key -> supplier.get()), row),
+                (left, right) -> right.forEach((key, container) -> left.merge(key, container, aggregator.combiner())));
+        Map<Object, R> result = new LinkedHashMap<>(groups.size() * 4 / 3 + 1);
+        groups.forEach((key, container) -> result.put(key, finisher.apply(container)));
+        return result;
+    }
+
+    /**
+     * Ascending sort by a comparable column, nulls first.
+     *
+     * @param column
+     * @return a new sorted set.
+     */
+    public DataSet sortBy(String column) {
+        return this.sortBy(DataSet.columnOrder(column, false));
+    }
+
+    /**
+     * Sort by a comparable column, nulls are the lowest value.
+     *
+     * @param column
+     * @param descending
+     * @return a new sorted set.
+     */
+    public DataSet sortBy(String column, boolean descending) {
+        return this.sortBy(DataSet.columnOrder(column, descending));
+    }
+
+    /**
+     * Stable sort, in parallel for large sets.
+     *
+     * @param comparator
+     * @return a new sorted set.
+     */
+    public DataSet sortBy(Comparator<? super DataRow> comparator) {
+        DataRow[] rows = this.toArray(new DataRow[this.size()]);
+        if (rows.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(rows, comparator);
+        } else {
+            Arrays.sort(rows, comparator);
+        }
+        DataSet sorted = new DataSet();
+        sorted.addAll(Arrays.asList(rows));
+        return sorted;
+    }
+
+    /**
+     * The first n rows by a column without sorting the whole set.
+     *
+     * @param n
+     * @param column
+     * @param descending true for the highest values.
+     * @return
+     */
+    public DataSet topN(int n, String column, boolean descending) {
+        return this.topN(n, DataSet.columnOrder(column, descending));
+    }
+
+    /**
+     * The first n rows in comparator order. keeps a bounded heap of n rows so
+     * the cost is O(size log n), large sets fill one heap per fork join task
+     * and merge them.
+     *
+     * @param n
+     * @param comparator
+     * @return the rows in comparator order.
+     */
+    public DataSet topN(int n, Comparator<? super DataRow> comparator) {
+        DataSet top = new DataSet();
+        if (n <= 0) {
+            return top;
+        }
+        // the head of the heap is the worst of the kept rows.
+        Comparator<DataRow> worstFirst = (a, b) -> comparator.compare(b, a);
+        PriorityQueue<DataRow> heap = this.operatorStream().collect(
+                () -> new PriorityQueue<>(Math.min(n, this.size()) + 1, worstFirst),
+                (queue, row) -> DataSet.offer(queue, row, n, comparator),
+                (left, right) -> right.forEach(row -> DataSet.offer(left, row, n, comparator)));
+        top.addAll(heap);
+        top.sort(comparator);
+        return top;
+    }
+
+    private static void offer(PriorityQueue<DataRow> queue, DataRow row, int n, Comparator<? super DataRow> comparator) {
+        if (queue.size() < n) {
+            queue.add(row);
+        } else if (comparator.compare(row, queue.peek()) < 0) {
+            queue.poll();
+            queue.add(row);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<DataRow> columnOrder(String column, boolean descending) {
+        Comparator<Comparable<Object>> values = Comparator.nullsFirst(Comparator.naturalOrder());
+        Comparator<DataRow> order = Comparator.comparing(row -> (Comparable<Object>) row.get(column), values);
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * Inner hash join. the other set is indexed by its column and each row of
+     * this set is matched against it, null keys never match. when both rows
+     * have a column with the same label the value of this set is kept.
+     *
+     * @param other right side.
+     * @param leftColumn column of this set.
+     * @param rightColumn column of the other set.
+     * @return joined rows in the order of this set.
+     */
+    public DataSet join(DataSet other, String leftColumn, String rightColumn) {
+        DataIndex index = other.indexBy(rightColumn);
+        return this.operatorStream().flatMap(left -> {
+            Object key = left.get(leftColumn);
+            List<DataRow> matches = key == null ? Collections.emptyList() : index.get(key);
+            return matches.stream().map(right -> {
+                DataRow joined = new DataRow((left.size() + right.size()) * 4 / 3 + 1);
+                joined.putAll(right);
+                joined.putAll(left);
+                return joined;
+            });
+        }).collect(DataSet::new, DataSet::add, DataSet::addAll);
+    }
+
 }
@@ -0,0 +1,111 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time where a unit of work must be done. a deadline can be shared
+ * by several queries so each statement only gets the time that is left.
+ *
+ * <pre>
+ * Deadline deadline = Deadline.after(2, TimeUnit.SECONDS);
+ * con.setDeadline(deadline);
+ * con.fetch("SELECT ..."); // uses part of the two seconds
+ * con.fetch("SELECT ..."); // only gets the remainder
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public final class Deadline {
+
+    private final long expiresAt;
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Creates a deadline from now.
+     *
+     * @param duration
+     * @param unit
+     * @return
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /**
+     * Remaining time.
+     *
+     * @param unit
+     * @return zero or negative if already expired.
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(this.expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return this.expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * The earlier of this deadline and another one.
+     *
+     * @param other
+     * @return
+     */
+    public Deadline min(Deadline other) {
+        if (other == null) {
+            return this;
+        }
+        return this.expiresAt - other.expiresAt <= 0 ? this : other;
+    }
+
+    /**
+     * Remaining time in whole seconds rounded up, for
+     * Statement.setQueryTimeout.
+     *
+     * @return at least one second.
+     * @throws SQLTimeoutException if the deadline has passed.
+     */
+    public int toQueryTimeout() throws SQLTimeoutException {
+        long nanos = this.expiresAt - System.nanoTime();
+        if (nanos <= 0) {
+            throw new SQLTimeoutException("Deadline exceeded before executing the statement.");
+        }
+        long seconds = (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(Integer.MAX_VALUE, seconds);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + this.remaining(TimeUnit.MILLISECONDS) + "ms}";
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses the JDBC fetch size of each query so a round trip carries about the
+ * same amount of memory whatever the width of the rows. the width is
+ * estimated from the result set meta data the first time a query runs and the
+ * fetch size is remembered for that SQL text.
+ *
+ * One advisor is usually shared by every manager of a connection factory.
+ *
+ * @see ConnectionFactory#setFetchSizeAdvisor(FetchSizeAdvisor)
+ * @author Jhon Melvin
+ */
+public class FetchSizeAdvisor {
+
+    /**
+     * Number of remembered queries before the memory is cleared.
+     */
+    private final static int MAX_QUERIES = 2048;
+
+    private final Map<String, Integer> fetchSizes;
+    private final long targetBytes;
+    private final int minimum;
+    private final int maximum;
+    private volatile boolean readTransaction;
+
+    /**
+     * About one MiB per round trip, between 10 and 5000 rows.
+     */
+    public FetchSizeAdvisor() {
+        this(1024 * 1024, 10, 5000);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param targetBytes memory per round trip.
+     * @param minimum lowest fetch size.
+     * @param maximum highest fetch size.
+     */
+    public FetchSizeAdvisor(long targetBytes, int minimum, int maximum) {
+        this.fetchSizes = new ConcurrentHashMap<>();
+        this.targetBytes = targetBytes;
+        this.minimum = Math.max(1, minimum);
+        this.maximum = Math.max(this.minimum, maximum);
+        this.readTransaction = false;
+    }
+
+    /**
+     * PostgreSQL ignores the fetch size in auto commit mode and buffers the
+     * whole result. when enabled a SELECT in auto commit mode is run in its
+     * own read transaction so the rows are streamed, it is rolled back if the
+     * fetch fails. disabled by default.
+     *
+     * @param readTransaction
+     */
+    public void setReadTransaction(boolean readTransaction) {
+        this.readTransaction = readTransaction;
+    }
+
+    public boolean isReadTransaction() {
+        return readTransaction;
+    }
+
+    /**
+     * Remembered fetch size of a query.
+     *
+     * @param query
+     * @return 0 when the query has not been learned yet.
+     */
+    public int getFetchSize(String query) {
+        Integer fetchSize = this.fetchSizes.get(query);
+        return fetchSize == null ? 0 : fetchSize;
+    }
+
+    /**
+     * Fetch size used before the width of a query is known.
+     *
+     * @return
+     */
+    public int getInitialFetchSize() {
+        return Math.min(this.maximum, Math.max(this.minimum, 100));
+    }
+
+    /**
+     * Computes and remembers the fetch size of a query.
+     *
+     * @param query
+     * @param metaData result columns.
+     * @return the fetch size.
+     * @throws SQLException
+     */
+    public int learn(String query, ResultSetMetaData metaData) throws SQLException {
+        long rowBytes = FetchSizeAdvisor.estimateRowSize(metaData);
+        int fetchSize = (int) Math.max(this.minimum, Math.min(this.maximum, this.targetBytes / rowBytes));
+        if (this.fetchSizes.size() >= MAX_QUERIES) {
+            this.fetchSizes.clear(); // ad hoc queries, start over.
+        }
+        this.fetchSizes.put(query, fetchSize);
+        return fetchSize;
+    }
+
+    /**
+     * Estimated heap bytes of one fetched row, in line with
+     * DataRow.estimateSize.
+     *
+     * @param metaData
+     * @return
+     * @throws SQLException
+     */
+    public static long estimateRowSize(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        long size = 64 + 16L * columnCount; // map header and table slots.
+        for (int column = 1; column <= columnCount; column++) {
+            size += 32 + FetchSizeAdvisor.estimateColumnSize(metaData.getColumnType(column), metaData.getColumnDisplaySize(column));
+        }
+        return size;
+    }
+
+    private static long estimateColumnSize(int sqlType, int displaySize) {
+        int width = displaySize <= 0 || displaySize > 512 ? 512 : displaySize;
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.REAL:
+                return 16;
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return 24;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return 64;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return 40 + 2L * width;
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return 40 + 2L * 512;
+            case Types.BINARY:
+            case Types.VARBINARY:
+                return 16 + width;
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return 4096;
+            default:
+                return 48;
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds connection managers that are never closed. register the detector to a
+ * connection factory and every manager it creates is tracked with its creation
+ * time and, for a sample of them, the stack trace of the code that created
+ * it.
+ *
+ * <pre>
+ * LeakDetector detector = new LeakDetector();
+ * detector.setLeakThreshold(2, TimeUnit.MINUTES);
+ * detector.setSamplingRate(0.05);
+ * factory.setLeakDetector(detector);
+ * </pre>
+ *
+ * A background sweeper logs managers held longer than the threshold. when an
+ * unclosed manager is garbage collected the physical connection is closed so
+ * the database slot is given back.
+ *
+ * @author Jhon Melvin
+ */
+public class LeakDetector implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LeakDetector.class.getName());
+
+    /**
+     * Tracking record of one manager. the referent is the manager so the
+     * record must not hold the manager itself, only its connection.
+     */
+    static final class Tracker extends PhantomReference<ConnectionManager> {
+
+        private final LeakDetector detector;
+        private final Connection connection;
+        private final long createdAt;
+        private final Throwable acquisition;
+        private volatile boolean reported;
+
+        private Tracker(LeakDetector detector, ConnectionManager manager, Connection connection, Throwable acquisition) {
+            super(manager, detector.collected);
+            this.detector = detector;
+            this.connection = connection;
+            this.createdAt = System.nanoTime();
+            this.acquisition = acquisition;
+        }
+
+        /**
+         * Called when the manager is closed.
+         */
+        void release() {
+            if (this.detector.tracked.remove(this)) {
+                this.clear();
+            }
+        }
+
+        private long heldMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.createdAt);
+        }
+    }
+
+    private final ReferenceQueue<ConnectionManager> collected;
+    private final Set<Tracker> tracked;
+    private final AtomicLong createdCount;
+    private final AtomicLong leakedCount;
+    private final AtomicLong reclaimedCount;
+    private volatile double samplingRate;
+    private volatile long leakThreshold;
+    private long sweepInterval;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Default settings: leaks after 5 minutes, 1% of the stack traces and a
+     * sweep every 30 seconds.
+     */
+    public LeakDetector() {
+        this.collected = new ReferenceQueue<>();
+        this.tracked = ConcurrentHashMap.newKeySet();
+        this.createdCount = new AtomicLong();
+        this.leakedCount = new AtomicLong();
+        this.reclaimedCount = new AtomicLong();
+        this.samplingRate = 0.01;
+        this.leakThreshold = TimeUnit.MINUTES.toMillis(5);
+        this.sweepInterval = TimeUnit.SECONDS.toMillis(30);
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Fraction of the managers whose creation stack trace is recorded. a stack
+     * trace costs a few microseconds so keep it low on busy systems.
+     *
+     * @param samplingRate 0 for none, 1 for every manager.
+     */
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = Math.max(0, Math.min(1, samplingRate));
+    }
+
+    /**
+     * Managers open longer than this are reported as leaks.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void setLeakThreshold(long duration, TimeUnit unit) {
+        this.leakThreshold = unit.toMillis(duration);
+    }
+
+    /**
+     * Time between sweeps, only applied before the first manager is tracked.
+     *
+     * @param duration
+     * @param unit
+     */
+    public synchronized void setSweepInterval(long duration, TimeUnit unit) {
+        this.sweepInterval = Math.max(1, unit.toMillis(duration));
+    }
+
+    //--------------------------------------------------------------------------
+    // Counts.
+    //--------------------------------------------------------------------------
+    /**
+     * Managers that are tracked and not yet closed or collected.
+     *
+     * @return
+     */
+    public int getOpenCount() {
+        return this.tracked.size();
+    }
+
+    /**
+     * Managers created since the detector was registered.
+     *
+     * @return
+     */
+    public long getCreatedCount() {
+        return this.createdCount.get();
+    }
+
+    /**
+     * Managers reported as held longer than the threshold.
+     *
+     * @return
+     */
+    public long getLeakedCount() {
+        return this.leakedCount.get();
+    }
+
+    /**
+     * Connections closed because their manager was collected unclosed.
+     *
+     * @return
+     */
+    public long getReclaimedCount() {
+        return this.reclaimedCount.get();
+    }
+
+    //--------------------------------------------------------------------------
+    // Tracking.
+    //--------------------------------------------------------------------------
+    /**
+     * Starts tracking a new manager.
+     *
+     * @param manager
+     * @param connection the physical connection of the manager.
+     * @return the tracker to release when the manager is closed.
+     */
+    Tracker track(ConnectionManager manager, Connection connection) {
+        Throwable acquisition = null;
+        double rate = this.samplingRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            acquisition = new Throwable("Connection acquired by thread " + Thread.currentThread().getName());
+        }
+        Tracker tracker = new Tracker(this, manager, connection, acquisition);
+        this.tracked.add(tracker);
+        this.createdCount.incrementAndGet();
+        this.startSweeper();
+        return tracker;
+    }
+
+    private synchronized void startSweeper() {
+        if (this.sweeper != null) {
+            return;
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polaris-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::sweep, this.sweepInterval, this.sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reclaims collected managers and reports the ones held too long. runs on
+     * the sweeper thread, can also be called directly.
+     */
+    public void sweep() {
+        try {
+            Reference<? extends ConnectionManager> reference;
+            while ((reference = this.collected.poll()) != null) {
+                this.reclaim((Tracker) reference);
+            }
+            //------------------------------------------------------------------
+            long threshold = this.leakThreshold;
+            for (Tracker tracker : this.tracked) {
+                long held = tracker.heldMillis();
+                if (!tracker.reported && held > threshold) {
+                    tracker.reported = true;
+                    this.leakedCount.incrementAndGet();
+                    if (tracker.acquisition == null) {
+                        LOGGER.log(Level.WARNING, "Connection held for {0} ms without being closed (stack trace not sampled).", held);
+                    } else {
+                        LOGGER.log(Level.WARNING, "Connection held for " + held + " ms without being closed.", tracker.acquisition);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // keep the sweeper alive.
+            LOGGER.log(Level.WARNING, "Leak sweep failed", e);
+        }
+    }
+
+    private void reclaim(Tracker tracker) {
+        if (!this.tracked.remove(tracker)) {
+            return; // closed meanwhile.
+        }
+        tracker.clear();
+        this.reclaimedCount.incrementAndGet();
+        try {
+            if (!tracker.connection.isClosed()) {
+                if (!tracker.connection.getAutoCommit()) {
+                    tracker.connection.rollback();
+                }
+                tracker.connection.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Cannot close the leaked connection -> {0}", e.toString());
+        }
+        if (tracker.acquisition == null) {
+            LOGGER.log(Level.WARNING, "Reclaimed the connection of a manager that was never closed, held for {0} ms (stack trace not sampled).", tracker.heldMillis());
+        } else {
+            LOGGER.log(Level.WARNING, "Reclaimed the connection of a manager that was never closed, held for " + tracker.heldMillis() + " ms.", tracker.acquisition);
+        }
+    }
+
+    /**
+     * Stops the sweeper. managers already tracked stay tracked.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.sweeper != null) {
+            this.sweeper.shutdownNow();
+            this.sweeper = null;
+        }
+    }
+
+}
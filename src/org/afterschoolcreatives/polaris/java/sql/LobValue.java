@@ -0,0 +1,251 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+
+/**
+ * Placeholder for a large binary or character column read by
+ * {@link ConnectionManager#fetchEachStreaming(java.lang.String,
+ * org.afterschoolcreatives.polaris.java.sql.RowHandler, java.lang.Object...)}.
+ * the value is not read from the result set until one of the stream methods is
+ * called, so a large BLOB or CLOB can be copied to a file or socket with a
+ * small buffer instead of being loaded as a whole array.
+ *
+ * the value is tied to the current row of the cursor, it can only be read
+ * inside the row handler and only once. keep the stream or the result, not
+ * this object.
+ *
+ * @author Jhon Melvin
+ */
+public final class LobValue {
+
+    /**
+     * Copy buffer size.
+     */
+    private final static int BUFFER_SIZE = 8192;
+
+    private final ResultSet resultSet;
+    private final int columnIndex;
+    private final boolean character;
+    private boolean valid;
+
+    LobValue(ResultSet resultSet, int columnIndex, boolean character) {
+        this.resultSet = resultSet;
+        this.columnIndex = columnIndex;
+        this.character = character;
+        this.valid = true;
+    }
+
+    /**
+     * Checks if the column type is read lazily.
+     *
+     * @param sqlType a value from java.sql.Types.
+     * @return
+     */
+    static boolean isLob(int sqlType) {
+        switch (sqlType) {
+            case Types.BLOB:
+            case Types.LONGVARBINARY:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if the column type is a character large object.
+     *
+     * @param sqlType
+     * @return
+     */
+    static boolean isCharacter(int sqlType) {
+        return sqlType == Types.CLOB || sqlType == Types.NCLOB
+                || sqlType == Types.LONGVARCHAR || sqlType == Types.LONGNVARCHAR;
+    }
+
+    /**
+     * Called after the row handler returns, the cursor will move.
+     */
+    void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * Marks the value as consumed, most drivers only allows one read of a
+     * column stream per row.
+     */
+    private void consume() {
+        if (!this.valid) {
+            throw new PolarisRuntimeException("LOB values can only be read once inside the row handler.");
+        }
+        this.valid = false;
+    }
+
+    /**
+     *
+     * @return true if this is a CLOB or long text column.
+     */
+    public boolean isCharacter() {
+        return this.character;
+    }
+
+    /**
+     *
+     * @return true if the value can still be read.
+     */
+    public boolean isReadable() {
+        return this.valid;
+    }
+
+    /**
+     * Opens the value as bytes. the stream is closed by the driver when the
+     * cursor moves.
+     *
+     * @return the stream or null if the value is NULL.
+     * @throws SQLException
+     */
+    public InputStream getBinaryStream() throws SQLException {
+        this.consume();
+        return this.resultSet.getBinaryStream(this.columnIndex);
+    }
+
+    /**
+     * Opens the value as characters. the reader is closed by the driver when
+     * the cursor moves.
+     *
+     * @return the reader or null if the value is NULL.
+     * @throws SQLException
+     */
+    public Reader getCharacterStream() throws SQLException {
+        this.consume();
+        return this.resultSet.getCharacterStream(this.columnIndex);
+    }
+
+    /**
+     * Copies the value to the output with a fixed buffer.
+     *
+     * @param output
+     * @return the number of bytes copied, -1 if the value is NULL.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long writeTo(OutputStream output) throws SQLException, IOException {
+        InputStream input = this.getBinaryStream();
+        if (input == null) {
+            return -1;
+        }
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long total = 0;
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+                total += count;
+            }
+            return total;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Copies the value to the writer with a fixed buffer.
+     *
+     * @param output
+     * @return the number of characters copied, -1 if the value is NULL.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long writeTo(Writer output) throws SQLException, IOException {
+        Reader input = this.getCharacterStream();
+        if (input == null) {
+            return -1;
+        }
+        try {
+            char[] buffer = new char[BUFFER_SIZE];
+            long total = 0;
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+                total += count;
+            }
+            return total;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads the whole value, only for values known to be small.
+     *
+     * @return the bytes or null if the value is NULL.
+     * @throws SQLException
+     */
+    public byte[] getBytes() throws SQLException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            return this.writeTo(output) < 0 ? null : output.toByteArray();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read the LOB value.", e);
+        }
+    }
+
+    /**
+     * Reads the whole value as text, only for values known to be small.
+     *
+     * @return the text or null if the value is NULL.
+     * @throws SQLException
+     */
+    public String getString() throws SQLException {
+        StringWriter output = new StringWriter();
+        try {
+            return this.writeTo(output) < 0 ? null : output.toString();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read the LOB value.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.character ? "CLOB" : "BLOB";
+    }
+
+}
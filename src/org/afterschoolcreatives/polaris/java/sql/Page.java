@@ -0,0 +1,97 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.afterschoolcreatives.polaris.java.sql.builder.PageToken;
+
+/**
+ * A page of results from a keyset query.
+ *
+ * @author Jhon Melvin
+ * @param <T> item type.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final Object[] lastKey;
+    private final boolean more;
+
+    /**
+     * Constructor.
+     *
+     * @param items the items of this page.
+     * @param lastKey the ordering column values of the last item, null if
+     * empty.
+     * @param more true if there is a next page.
+     */
+    public Page(List<T> items, Object[] lastKey, boolean more) {
+        this.items = Collections.unmodifiableList(items);
+        this.lastKey = lastKey;
+        this.more = more;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return this.items.isEmpty();
+    }
+
+    /**
+     * Checks whether there is a next page.
+     *
+     * @return
+     */
+    public boolean hasNext() {
+        return more;
+    }
+
+    /**
+     * The ordering column values of the last item.
+     *
+     * @return null if the page is empty.
+     */
+    public Object[] getLastKey() {
+        return this.lastKey == null ? null : Arrays.copyOf(this.lastKey, this.lastKey.length);
+    }
+
+    /**
+     * Token to request the next page with KeysetQuery.afterToken.
+     *
+     * @return null if there is no next page.
+     */
+    public String getContinuationToken() {
+        if (!this.more || this.lastKey == null) {
+            return null;
+        }
+        return PageToken.encode(this.lastKey);
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Converts fetched rows to entities on the fork join common pool. the rows are
+ * split in chunks, each chunk writes its entities to its own range of the
+ * result so the row order is kept. results below the threshold are converted
+ * on the calling thread since splitting costs more than it saves.
+ *
+ * the mapper is called from many threads, it must only touch the row it is
+ * given and the new entity.
+ *
+ * @author Jhon Melvin
+ */
+public final class ParallelHydrator {
+
+    /**
+     * Results with fewer rows are converted on the calling thread.
+     */
+    public final static int PARALLEL_THRESHOLD = DataSet.PARALLEL_THRESHOLD;
+    /**
+     * Rows converted by one task.
+     */
+    private final static int CHUNK_SIZE = 1024;
+
+    /**
+     * Converts a range of rows.
+     */
+    private final static class HydrateTask<R, T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final R[] rows;
+        private final List<T> results;
+        private final Function<? super R, ? extends T> mapper;
+        private final int from;
+        private final int to;
+
+        private HydrateTask(R[] rows, List<T> results, Function<? super R, ? extends T> mapper, int from, int to) {
+            this.rows = rows;
+            this.results = results;
+            this.mapper = mapper;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= CHUNK_SIZE) {
+                for (int index = this.from; index < this.to; index++) {
+                    this.results.set(index, this.mapper.apply(this.rows[index]));
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            ForkJoinTask.invokeAll(
+                    new HydrateTask<>(this.rows, this.results, this.mapper, this.from, middle),
+                    new HydrateTask<>(this.rows, this.results, this.mapper, middle, this.to));
+        }
+    }
+
+    /**
+     * Static class.
+     */
+    private ParallelHydrator() {
+        // no - op
+    }
+
+    /**
+     * Converts the rows in order, in parallel when there are at least
+     * PARALLEL_THRESHOLD rows.
+     *
+     * @param <R> row type.
+     * @param <T> entity type.
+     * @param rows
+     * @param mapper returns null to skip a row.
+     * @return the entities in the order of the rows.
+     */
+    public static <R, T> List<T> hydrate(R[] rows, Function<? super R, ? extends T> mapper) {
+        return ParallelHydrator.hydrate(rows, mapper, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Converts the rows in order.
+     *
+     * @param <R> row type.
+     * @param <T> entity type.
+     * @param rows
+     * @param mapper returns null to skip a row.
+     * @param threshold minimum rows to convert in parallel.
+     * @return the entities in the order of the rows.
+     */
+    public static <R, T> List<T> hydrate(R[] rows, Function<? super R, ? extends T> mapper, int threshold) {
+        if (rows.length < threshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            List<T> list = new ArrayList<>(rows.length);
+            for (R row : rows) {
+                T entity = mapper.apply(row);
+                if (entity != null) {
+                    list.add(entity);
+                }
+            }
+            return list;
+        }
+        // each task only sets its own slots, invoke() publishes them on return.
+        List<T> results = new ArrayList<>(Collections.<T>nCopies(rows.length, null));
+        ForkJoinPool.commonPool().invoke(new HydrateTask<>(rows, results, mapper, 0, rows.length));
+        results.removeIf(entity -> entity == null);
+        return results;
+    }
+
+}
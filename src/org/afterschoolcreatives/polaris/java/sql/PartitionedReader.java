@@ -0,0 +1,485 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+
+/**
+ * Reads a whole table in parallel. the key range is split into partitions and
+ * each partition is fetched on its own connection from the connection factory
+ * (override ConnectionFactory.createConnection to use a pool). rows are handed
+ * to the caller through bounded queues so the workers wait when the consumer
+ * is slow.
+ *
+ * Each partition is read in chunks using the key as a seek position, the key
+ * must be unique and indexed, usually the primary key.
+ *
+ * <pre>
+ * try (PartitionedReader reader = new PartitionedReader(factory, "audit_log", "audit_id")) {
+ *     reader.setPartitions(4);
+ *     reader.stream().forEach(row -> export(row));
+ * }
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public class PartitionedReader implements AutoCloseable {
+
+    /**
+     * Merge Mode.
+     */
+    public enum MergeMode {
+        /**
+         * Rows are returned as soon as any partition has them.
+         */
+        UNORDERED,
+        /**
+         * Rows are returned in key order, partitions are drained one after the
+         * other while the next partitions are prefetched.
+         */
+        ORDERED
+    }
+
+    /**
+     * Marks the end of a partition in the queue.
+     */
+    private final static DataRow END_OF_PARTITION = new DataRow(0);
+
+    private final ConnectionFactory connectionFactory;
+    private final String table;
+    private final String keyColumn;
+    private String columns;
+    private String condition;
+    private Object[] conditionParameters;
+    private Object[] boundaries;
+    private int partitions;
+    private int chunkSize;
+    private int bufferSize;
+    private MergeMode mergeMode;
+    //--------------------------------------------------------------------------
+    private ExecutorService executor;
+    private final AtomicReference<Throwable> failure;
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param connectionFactory source of the connections.
+     * @param table table name.
+     * @param keyColumn unique and indexed key used for partitioning.
+     */
+    public PartitionedReader(ConnectionFactory connectionFactory, String table, String keyColumn) {
+        this.connectionFactory = connectionFactory;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = "*";
+        this.condition = null;
+        this.conditionParameters = new Object[0];
+        this.boundaries = null;
+        this.partitions = Runtime.getRuntime().availableProcessors();
+        this.chunkSize = 1000;
+        this.bufferSize = 2000;
+        this.mergeMode = MergeMode.UNORDERED;
+        this.executor = null;
+        this.failure = new AtomicReference<>();
+        this.closed = false;
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Columns to select, all columns by default. the key column must be
+     * included.
+     *
+     * @param columns
+     */
+    public void setColumns(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Additional filter applied to every partition.
+     *
+     * @param condition
+     * @param parameters
+     */
+    public void setCondition(String condition, Object... parameters) {
+        this.condition = condition;
+        this.conditionParameters = parameters;
+    }
+
+    /**
+     * Number of partitions and connections used when the key range is
+     * computed from a numeric key.
+     *
+     * @param partitions
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new PolarisRuntimeException("Partitions must be greater than zero.");
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * Explicit split points for keys that are not numeric. N split points
+     * creates N + 1 partitions.
+     *
+     * @param boundaries ascending key values.
+     */
+    public void setBoundaries(Object... boundaries) {
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * Rows fetched per query in each partition.
+     *
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new PolarisRuntimeException("Chunk size must be greater than zero.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Maximum rows waiting in a queue before the workers are blocked. in
+     * unordered mode this is the size of the shared queue, in ordered mode
+     * each partition has its own queue of this size.
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new PolarisRuntimeException("Buffer size must be greater than zero.");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public void setMergeMode(MergeMode mergeMode) {
+        this.mergeMode = mergeMode;
+    }
+
+    //--------------------------------------------------------------------------
+    // Reading.
+    //--------------------------------------------------------------------------
+    /**
+     * Starts the partition workers and returns the merged rows. closing the
+     * stream closes this reader.
+     *
+     * @return
+     * @throws SQLException if the key range cannot be read.
+     */
+    public Stream<DataRow> stream() throws SQLException {
+        Iterator<DataRow> iterator = this.iterator();
+        int characteristics = Spliterator.NONNULL;
+        if (this.mergeMode == MergeMode.ORDERED) {
+            characteristics |= Spliterator.ORDERED;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Starts the partition workers and returns the merged rows.
+     *
+     * @return
+     * @throws SQLException if the key range cannot be read.
+     */
+    public Iterator<DataRow> iterator() throws SQLException {
+        if (this.executor != null) {
+            throw new PolarisRuntimeException("This reader was already started.");
+        }
+        List<Object[]> ranges = this.createRanges();
+        this.executor = Executors.newFixedThreadPool(ranges.size(), runnable -> {
+            Thread thread = new Thread(runnable, "polaris-partitioned-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //----------------------------------------------------------------------
+        if (this.mergeMode == MergeMode.ORDERED) {
+            List<BlockingQueue<DataRow>> queues = new ArrayList<>(ranges.size());
+            for (Object[] range : ranges) {
+                BlockingQueue<DataRow> queue = new ArrayBlockingQueue<>(this.bufferSize);
+                queues.add(queue);
+                this.executor.execute(() -> this.readPartition(range[0], range[1], queue));
+            }
+            return new MergeIterator(queues, 1);
+        }
+        BlockingQueue<DataRow> queue = new ArrayBlockingQueue<>(this.bufferSize);
+        for (Object[] range : ranges) {
+            this.executor.execute(() -> this.readPartition(range[0], range[1], queue));
+        }
+        return new MergeIterator(Arrays.asList(queue), ranges.size());
+    }
+
+    /**
+     * Creates the lower (inclusive) and upper (exclusive) key of each
+     * partition, null means unbounded.
+     *
+     * @return
+     * @throws SQLException
+     */
+    private List<Object[]> createRanges() throws SQLException {
+        List<Object[]> ranges = new ArrayList<>();
+        Object[] splitPoints = this.boundaries;
+        if (splitPoints == null) {
+            splitPoints = this.computeSplitPoints();
+        }
+        Object lower = null;
+        for (Object splitPoint : splitPoints) {
+            ranges.add(new Object[]{lower, splitPoint});
+            lower = splitPoint;
+        }
+        ranges.add(new Object[]{lower, null});
+        return ranges;
+    }
+
+    /**
+     * Splits the numeric key range evenly.
+     *
+     * @return
+     * @throws SQLException
+     */
+    private Object[] computeSplitPoints() throws SQLException {
+        DataRow range;
+        try (ConnectionManager con = this.connectionFactory.createConnectionManager()) {
+            range = con.fetchFirst("SELECT MIN(" + this.keyColumn + ") AS min_key, MAX("
+                    + this.keyColumn + ") AS max_key FROM " + this.table);
+        }
+        Object min = range.get("min_key");
+        Object max = range.get("max_key");
+        if (min == null || max == null || this.partitions == 1) {
+            return new Object[0]; // empty table or single partition.
+        }
+        if (!(min instanceof Number) || !(max instanceof Number)) {
+            throw new PolarisRuntimeException("Key column " + this.keyColumn
+                    + " is not numeric, please set the partition boundaries.");
+        }
+        long low = ((Number) min).longValue();
+        long high = ((Number) max).longValue();
+        long width = Math.max(1, (high - low) / this.partitions + 1);
+        List<Object> points = new ArrayList<>();
+        for (int index = 1; index < this.partitions; index++) {
+            long point = low + width * index;
+            if (point > high) {
+                break;
+            }
+            points.add(point);
+        }
+        return points.toArray();
+    }
+
+    /**
+     * Worker, reads a partition chunk by chunk and puts the rows to the
+     * queue.
+     *
+     * @param lower inclusive lower key or null.
+     * @param upper exclusive upper key or null.
+     * @param queue
+     */
+    private void readPartition(Object lower, Object upper, BlockingQueue<DataRow> queue) {
+        try (ConnectionManager con = this.connectionFactory.createConnectionManager()) {
+            Object lastKey = null;
+            String keyLabel = null;
+            while (!this.closed) {
+                //--------------------------------------------------------------
+                // build the chunk query.
+                //--------------------------------------------------------------
+                List<String> predicates = new ArrayList<>();
+                List<Object> parameters = new ArrayList<>();
+                if (lastKey != null) {
+                    predicates.add(this.keyColumn + " > ?");
+                    parameters.add(lastKey);
+                } else if (lower != null) {
+                    predicates.add(this.keyColumn + " >= ?");
+                    parameters.add(lower);
+                }
+                if (upper != null) {
+                    predicates.add(this.keyColumn + " < ?");
+                    parameters.add(upper);
+                }
+                if (this.condition != null) {
+                    predicates.add("(" + this.condition + ")");
+                    parameters.addAll(Arrays.asList(this.conditionParameters));
+                }
+                String query = "SELECT " + this.columns + " FROM " + this.table
+                        + (predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates))
+                        + " ORDER BY " + this.keyColumn + " LIMIT ?";
+                parameters.add(this.chunkSize);
+                //--------------------------------------------------------------
+                DataSet chunk = con.fetch(query, parameters.toArray());
+                for (DataRow row : chunk) {
+                    queue.put(row);
+                }
+                if (chunk.size() < this.chunkSize) {
+                    break; // last chunk.
+                }
+                DataRow last = chunk.get(chunk.size() - 1);
+                if (keyLabel == null) {
+                    keyLabel = PartitionedReader.keyLabel(last, this.keyColumn);
+                }
+                lastKey = last.get(keyLabel);
+                if (lastKey == null) {
+                    // without a key the next chunk would restart from the lower bound.
+                    throw new PolarisRuntimeException("The key column " + this.keyColumn + " is null, the partition cannot continue.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // closed by the consumer.
+        } catch (SQLException | RuntimeException e) {
+            this.failure.compareAndSet(null, e);
+        }
+        try {
+            queue.put(END_OF_PARTITION);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Label of the key column in the result. the case is ignored since some
+     * drivers fold unquoted names.
+     *
+     * @param row a row of the result.
+     * @param column
+     * @return
+     */
+    private static String keyLabel(DataRow row, String column) {
+        String label = column.trim();
+        int dot = label.lastIndexOf('.');
+        if (dot >= 0) {
+            label = label.substring(dot + 1);
+        }
+        label = label.replace("`", "").replace("\"", "");
+        for (String name : row.keySet()) {
+            if (name.equalsIgnoreCase(label)) {
+                return name;
+            }
+        }
+        throw new PolarisRuntimeException("The key column " + column + " is not selected.");
+    }
+
+    /**
+     * Stops the workers and closes their connections.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Merge Iterator.
+    //--------------------------------------------------------------------------
+    /**
+     * Drains the queues in order. each queue is finished after the expected
+     * number of end markers.
+     */
+    private class MergeIterator implements Iterator<DataRow> {
+
+        private final List<BlockingQueue<DataRow>> queues;
+        private final int producersPerQueue;
+        private int finishedProducers;
+        private int current;
+        private DataRow next;
+
+        private MergeIterator(List<BlockingQueue<DataRow>> queues, int producersPerQueue) {
+            this.queues = queues;
+            this.producersPerQueue = producersPerQueue;
+            this.finishedProducers = 0;
+            this.current = 0;
+            this.next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null && this.current < this.queues.size()) {
+                DataRow row;
+                try {
+                    row = this.queues.get(this.current).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    PartitionedReader.this.close();
+                    throw new PolarisRuntimeException("Interrupted while waiting for rows.", e);
+                }
+                if (row == END_OF_PARTITION) {
+                    this.checkFailure();
+                    if (++this.finishedProducers == this.producersPerQueue) {
+                        this.finishedProducers = 0;
+                        this.current++;
+                    }
+                } else {
+                    this.next = row;
+                }
+            }
+            if (this.next == null) {
+                this.checkFailure();
+                PartitionedReader.this.close();
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public DataRow next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DataRow row = this.next;
+            this.next = null;
+            return row;
+        }
+
+        private void checkFailure() {
+            Throwable error = PartitionedReader.this.failure.get();
+            if (error != null) {
+                PartitionedReader.this.close();
+                throw new PolarisRuntimeException("Partition read failed.", error);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.builder.QueryBuilder;
+
+/**
+ * Collects independent SELECT statements and sends them to the database in a
+ * single round trip. the statements are joined into one multi statement query,
+ * PostgreSQL sends them as one pipelined batch of the extended protocol and
+ * MySQL or MariaDB return multiple results. SQLITE, and MySQL or MariaDB
+ * without multi statements, run them one after the other.
+ *
+ * <pre>
+ * Pipeline pipeline = con.pipeline();
+ * int user = pipeline.add("SELECT * FROM users WHERE id = ?", userId);
+ * int unread = pipeline.add("SELECT COUNT(*) AS total FROM messages WHERE owner = ?", userId);
+ * List&lt;DataSet&gt; results = pipeline.execute();
+ * DataSet users = results.get(user);
+ * </pre>
+ *
+ * @see ConnectionFactory#setMultiStatements(boolean)
+ * @author Jhon Melvin
+ */
+public class Pipeline {
+
+    private final ConnectionManager connectionManager;
+    private final List<String> queries;
+    private final List<Object[]> parameters;
+
+    Pipeline(ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+        this.queries = new ArrayList<>();
+        this.parameters = new ArrayList<>();
+    }
+
+    /**
+     * Adds a SELECT statement.
+     *
+     * @param query a single statement, a trailing semicolon is removed.
+     * @param parameters
+     * @return the index of its result.
+     */
+    public int add(String query, Object... parameters) {
+        String statement = query.trim();
+        while (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1).trim();
+        }
+        if (statement.isEmpty()) {
+            throw new PolarisRuntimeException("Pipeline statements cannot be empty.");
+        }
+        this.queries.add(statement);
+        this.parameters.add(parameters == null ? new Object[0] : parameters);
+        return this.queries.size() - 1;
+    }
+
+    /**
+     * Adds a SELECT statement from a query builder.
+     *
+     * @param builder
+     * @return the index of its result.
+     */
+    public int add(QueryBuilder builder) {
+        return this.add(builder.getQueryString(), builder.getParameters());
+    }
+
+    public int size() {
+        return this.queries.size();
+    }
+
+    /**
+     * Sends the statements and clears the pipeline.
+     *
+     * @return one data set per statement in the order they were added.
+     * @throws SQLException
+     */
+    public List<DataSet> execute() throws SQLException {
+        try {
+            if (this.queries.size() > 1 && this.connectionManager.supportsMultiStatements()) {
+                return this.executeTogether();
+            }
+            List<DataSet> results = new ArrayList<>(this.queries.size());
+            for (int index = 0; index < this.queries.size(); index++) {
+                results.add(this.connectionManager.fetch(this.queries.get(index), this.parameters.get(index)));
+            }
+            return results;
+        } finally {
+            this.queries.clear();
+            this.parameters.clear();
+        }
+    }
+
+    private List<DataSet> executeTogether() throws SQLException {
+        StringBuilder query = new StringBuilder();
+        List<Object> allParameters = new ArrayList<>();
+        for (int index = 0; index < this.queries.size(); index++) {
+            if (index > 0) {
+                query.append(";\n");
+            }
+            query.append(this.queries.get(index));
+            allParameters.addAll(Arrays.asList(this.parameters.get(index)));
+        }
+        return this.connectionManager.fetchMultiple(query.toString(), allParameters.toArray(), this.queries.size());
+    }
+
+}
@@ -0,0 +1,217 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.builder.KeysetQuery;
+
+/**
+ * Walks a keyset query page by page while the following pages are fetched in
+ * the background. a worker thread with its own connection reads up to the
+ * prefetch depth ahead so the database works while the caller processes the
+ * current page.
+ *
+ * <pre>
+ * KeysetQuery query = new KeysetQuery(driver)
+ *         .select("SELECT * FROM audit_log")
+ *         .orderBy("audit_id")
+ *         .limit(500);
+ * try (PrefetchingPager&lt;DataRow&gt; pager = new PrefetchingPager&lt;&gt;(factory, query, ConnectionManager::fetchPage)) {
+ *     while (pager.hasNext()) {
+ *         for (DataRow row : pager.next().getItems()) {
+ *             process(row);
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * The query is owned by the pager once it starts, its position is moved
+ * after every page. closing the pager cancels the running statement and stops
+ * the worker.
+ *
+ * @author Jhon Melvin
+ * @param <T> item type.
+ */
+public class PrefetchingPager<T> implements Iterator<Page<T>>, AutoCloseable {
+
+    /**
+     * Marks the end of the pages in the queue.
+     */
+    private final static Object END = new Object();
+
+    private final ConnectionFactory factory;
+    private final KeysetQuery query;
+    private final PageFetcher<T> fetcher;
+    private final AtomicReference<Exception> failure;
+    private int prefetchDepth;
+    private BlockingQueue<Object> queue;
+    private Thread worker;
+    private volatile ConnectionManager workerConnection;
+    private volatile boolean closed;
+    private Page<T> next;
+    private boolean finished;
+
+    /**
+     * Constructor.
+     *
+     * @param factory creates the background connection.
+     * @param query the first page is read from its current position.
+     * @param fetcher reads a page.
+     */
+    public PrefetchingPager(ConnectionFactory factory, KeysetQuery query, PageFetcher<T> fetcher) {
+        this.factory = factory;
+        this.query = query;
+        this.fetcher = fetcher;
+        this.failure = new AtomicReference<>();
+        this.prefetchDepth = 1;
+    }
+
+    /**
+     * Number of pages fetched ahead of the caller, default is 1. must be set
+     * before the first page is read.
+     *
+     * @param prefetchDepth
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        if (this.worker != null) {
+            throw new PolarisRuntimeException("The pager has already started.");
+        }
+        this.prefetchDepth = Math.max(1, prefetchDepth);
+    }
+
+    //--------------------------------------------------------------------------
+    // Worker.
+    //--------------------------------------------------------------------------
+    private void start() {
+        this.queue = new ArrayBlockingQueue<>(this.prefetchDepth);
+        this.worker = new Thread(this::prefetch, "polaris-prefetching-pager");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private void prefetch() {
+        try (ConnectionManager con = this.factory.createConnectionManager()) {
+            this.workerConnection = con;
+            while (!this.closed) {
+                Page<T> page = this.fetcher.fetch(con, this.query);
+                this.queue.put(page);
+                if (!page.hasNext()) {
+                    break;
+                }
+                this.query.after(page.getLastKey());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // closed by the caller.
+        } catch (SQLException | RuntimeException e) {
+            if (!this.closed) {
+                this.failure.compareAndSet(null, e);
+            }
+        } finally {
+            this.workerConnection = null;
+        }
+        try {
+            this.queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Iterator.
+    //--------------------------------------------------------------------------
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        if (this.next != null) {
+            return true;
+        }
+        if (this.finished || this.closed) {
+            return false;
+        }
+        if (this.worker == null) {
+            this.start();
+        }
+        Object item;
+        try {
+            item = this.queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.close();
+            throw new PolarisRuntimeException("Interrupted while waiting for the next page.", e);
+        }
+        if (item == END) {
+            this.finished = true;
+            Exception error = this.failure.get();
+            if (error != null) {
+                throw new PolarisRuntimeException("Failed to fetch the next page.", error);
+            }
+            return false;
+        }
+        this.next = (Page<T>) item;
+        return true;
+    }
+
+    @Override
+    public Page<T> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Page<T> page = this.next;
+        this.next = null;
+        return page;
+    }
+
+    /**
+     * Stops prefetching. the running statement is cancelled and the
+     * background connection is closed.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        ConnectionManager con = this.workerConnection;
+        if (con != null) {
+            try {
+                con.cancelCurrent();
+            } catch (SQLException e) {
+                // the worker stops on its own.
+            }
+        }
+        if (this.worker != null) {
+            this.worker.interrupt();
+        }
+    }
+
+}
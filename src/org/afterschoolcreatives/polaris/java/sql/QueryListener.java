@@ -0,0 +1,57 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+/**
+ * Receives the statements executed by a connection manager. called on the
+ * executing thread after the statement is done so implementations must be
+ * fast and thread safe.
+ *
+ * @see ConnectionManager#setQueryListener(QueryListener)
+ * @author Jhon Melvin
+ */
+@FunctionalInterface
+public interface QueryListener {
+
+    /**
+     * Statement type.
+     */
+    enum Kind {
+        FETCH, UPDATE, INSERT
+    }
+
+    /**
+     * Called after a statement.
+     *
+     * @param kind
+     * @param query SQL Statement.
+     * @param parameters bound parameters, must not be modified.
+     * @param elapsedNanos execution time including reading the results.
+     * @param success false if the statement failed.
+     */
+    void executed(Kind kind, String query, Object[] parameters, long elapsedNanos, boolean success);
+
+}
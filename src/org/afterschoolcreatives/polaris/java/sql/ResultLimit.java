@@ -0,0 +1,98 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import org.afterschoolcreatives.polaris.java.exceptions.ResultTooLargeException;
+
+/**
+ * Maximum rows and estimated bytes of a fetched result. the size of each row
+ * is estimated with DataRow.estimateSize while the result is read, so a fetch
+ * fails before the whole result is in memory.
+ *
+ * <pre>
+ * factory.setResultLimit(new ResultLimit(100_000, 256 * 1024 * 1024)); // default.
+ * DataSet rows = con.fetch(new ResultLimit(1000, 0), query); // this call only.
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public final class ResultLimit {
+
+    /**
+     * No limit.
+     */
+    public final static ResultLimit NONE = new ResultLimit(0, 0);
+
+    private final long maxRows;
+    private final long maxBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRows maximum rows, 0 for no limit.
+     * @param maxBytes maximum estimated bytes, 0 for no limit.
+     */
+    public ResultLimit(long maxRows, long maxBytes) {
+        this.maxRows = maxRows > 0 ? maxRows : Long.MAX_VALUE;
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+    }
+
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isUnlimited() {
+        return this.maxRows == Long.MAX_VALUE && this.maxBytes == Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks the size of the result read so far.
+     *
+     * @param rows
+     * @param bytes
+     * @throws ResultTooLargeException
+     */
+    void check(long rows, long bytes) {
+        if (rows > this.maxRows) {
+            throw new ResultTooLargeException("Result has more than " + this.maxRows + " rows.", rows, bytes);
+        }
+        if (bytes > this.maxBytes) {
+            throw new ResultTooLargeException("Result is larger than an estimated "
+                    + this.maxBytes + " bytes after " + rows + " rows.", rows, bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResultLimit{" + "maxRows=" + (this.maxRows == Long.MAX_VALUE ? "none" : this.maxRows)
+                + ", maxBytes=" + (this.maxBytes == Long.MAX_VALUE ? "none" : this.maxBytes) + '}';
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the results being read by fetch in this JVM. the bytes are
+ * the DataRow.estimateSize of the rows read so far by the fetches that have not
+ * returned yet, a result stops being counted once it is handed to the caller.
+ *
+ * The accounting costs a size estimate per row so it is disabled by default,
+ * the rejected count is always kept.
+ *
+ * <pre>
+ * ResultMemory.setEnabled(true);
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public final class ResultMemory {
+
+    /**
+     * The shared totals are updated once per this number of rows.
+     */
+    private final static int FLUSH_ROWS = 64;
+
+    private final static AtomicLong IN_FLIGHT_BYTES = new AtomicLong();
+    private final static AtomicLong PEAK_BYTES = new AtomicLong();
+    private final static AtomicInteger IN_FLIGHT_FETCHES = new AtomicInteger();
+    private final static AtomicLong REJECTED = new AtomicLong();
+    private static volatile boolean enabled = false;
+
+    /**
+     * Accounting of one fetch, used by a single thread.
+     */
+    final static class Tracker {
+
+        private long counted;
+        private long pending;
+        private int rows;
+
+        private Tracker() {
+            IN_FLIGHT_FETCHES.incrementAndGet();
+        }
+
+        void add(long bytes) {
+            this.pending += bytes;
+            if (++this.rows % FLUSH_ROWS == 0) {
+                this.flush();
+            }
+        }
+
+        private void flush() {
+            long total = IN_FLIGHT_BYTES.addAndGet(this.pending);
+            this.counted += this.pending;
+            this.pending = 0;
+            PEAK_BYTES.accumulateAndGet(total, Math::max);
+        }
+
+        /**
+         * The fetch has returned or failed.
+         */
+        void release() {
+            IN_FLIGHT_BYTES.addAndGet(-this.counted);
+            IN_FLIGHT_FETCHES.decrementAndGet();
+            this.counted = 0;
+            this.pending = 0;
+        }
+    }
+
+    /**
+     * Static class.
+     */
+    private ResultMemory() {
+        // no - op
+    }
+
+    /**
+     * Turns the in flight accounting of fetch on or off.
+     *
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        ResultMemory.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return ResultMemory.enabled;
+    }
+
+    /**
+     * Starts the accounting of a fetch.
+     *
+     * @return null when the accounting is disabled.
+     */
+    static Tracker track() {
+        return ResultMemory.enabled ? new Tracker() : null;
+    }
+
+    /**
+     * A fetch was stopped by its result limit.
+     */
+    static void rejected() {
+        REJECTED.incrementAndGet();
+    }
+
+    /**
+     *
+     * @return estimated bytes of the results being read now.
+     */
+    public static long getInFlightBytes() {
+        return IN_FLIGHT_BYTES.get();
+    }
+
+    /**
+     *
+     * @return the highest in flight bytes seen.
+     */
+    public static long getPeakBytes() {
+        return PEAK_BYTES.get();
+    }
+
+    /**
+     *
+     * @return number of fetches reading a result now.
+     */
+    public static int getInFlightFetches() {
+        return IN_FLIGHT_FETCHES.get();
+    }
+
+    /**
+     *
+     * @return number of fetches stopped by a result limit.
+     */
+    public static long getRejectedCount() {
+        return REJECTED.get();
+    }
+
+}
@@ -0,0 +1,481 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+
+/**
+ * SQLITE access for many threads. SQLITE allows a single writer at a time so
+ * instead of letting threads fight over the lock (SQLITE_BUSY) every write is
+ * queued to one dedicated writer connection. the writer groups the queued
+ * writes into one transaction per batch or commit window so a burst of small
+ * writes costs a single commit. reads use a pool of read only connections that
+ * work next to the writer thanks to WAL mode.
+ *
+ * <pre>
+ * try (SQLiteDatabase db = new SQLiteDatabase(factory, 4)) {
+ *     db.update("INSERT INTO cache (k, v) VALUES (?, ?)", key, value);
+ *     DataSet rows = db.fetch("SELECT * FROM cache WHERE k = ?", key);
+ * }
+ * </pre>
+ *
+ * Each write runs inside its own savepoint, a failing write is rolled back
+ * alone and does not affect the other writes of the batch. a write is only
+ * reported as done after its batch has been committed.
+ *
+ * @author Jhon Melvin
+ */
+public class SQLiteDatabase implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SQLiteDatabase.class.getName());
+
+    /**
+     * Queued write.
+     *
+     * @param <T>
+     */
+    private static class WriteRequest<T> {
+
+        private final ConnectionTask<T> task;
+        private final CompletableFuture<T> future;
+        private T result;
+        private Throwable error;
+
+        private WriteRequest(ConnectionTask<T> task) {
+            this.task = task;
+            this.future = new CompletableFuture<>();
+        }
+
+        private void execute(ConnectionManager con) throws SQLException {
+            this.result = this.task.execute(con);
+        }
+
+        private void complete() {
+            if (this.error == null) {
+                this.future.complete(this.result);
+            } else {
+                this.future.completeExceptionally(this.error);
+            }
+        }
+    }
+
+    /**
+     * Marker that stops the writer thread.
+     */
+    private final static WriteRequest<Object> STOP = new WriteRequest<>(null);
+
+    private final ConnectionManager writer;
+    private final BlockingQueue<WriteRequest<?>> queue;
+    private final Thread writerThread;
+    private final BlockingQueue<ConnectionManager> readers;
+    private final List<ConnectionManager> readerConnections;
+    /**
+     * Submits hold the read lock while queueing, close takes the write lock so
+     * no write is queued after the writer has stopped.
+     */
+    private final ReadWriteLock closeLock;
+    private volatile boolean closed;
+    private volatile int batchSize;
+    private volatile long commitWindow;
+
+    /**
+     * Constructor with four readers.
+     *
+     * @param factory SQLITE connection factory.
+     * @throws SQLException
+     */
+    public SQLiteDatabase(ConnectionFactory factory) throws SQLException {
+        this(factory, 4);
+    }
+
+    /**
+     * Opens the writer connection and the read only connections.
+     *
+     * @param factory SQLITE connection factory.
+     * @param readerCount number of read only connections.
+     * @throws SQLException
+     */
+    public SQLiteDatabase(ConnectionFactory factory, int readerCount) throws SQLException {
+        if (factory.getConnectionDriver() != ConnectionFactory.Driver.SQLite) {
+            throw new PolarisRuntimeException("SQLiteDatabase requires the SQLite driver.");
+        }
+        if (readerCount < 1) {
+            throw new PolarisRuntimeException("At least one reader is required.");
+        }
+        this.batchSize = 256;
+        this.commitWindow = 0;
+        this.queue = new LinkedBlockingQueue<>(10000);
+        this.closeLock = new ReentrantReadWriteLock();
+        this.readers = new ArrayBlockingQueue<>(readerCount);
+        this.readerConnections = new ArrayList<>(readerCount);
+        //----------------------------------------------------------------------
+        this.writer = SQLiteDatabase.open(factory, false);
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                ConnectionManager reader = SQLiteDatabase.open(factory, true);
+                this.readerConnections.add(reader);
+                this.readers.add(reader);
+            }
+        } catch (SQLException e) {
+            this.writer.closeQuietly();
+            this.readerConnections.forEach(ConnectionManager::closeQuietly);
+            throw e;
+        }
+        //----------------------------------------------------------------------
+        this.writerThread = new Thread(this::writeLoop, "polaris-sqlite-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    private static ConnectionManager open(ConnectionFactory factory, boolean readOnly) throws SQLException {
+        Connection connection = factory.createConnection();
+        try {
+            ConnectionFactory.tuneSQLite(connection);
+            if (readOnly) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA query_only = ON");
+                }
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new ConnectionManager(ConnectionFactory.Driver.SQLite, connection);
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Maximum number of writes in one transaction. default is 256.
+     *
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * How long the writer waits for more writes before committing a batch.
+     * default is zero which commits whatever was queued during the previous
+     * commit. a small window only helps callers that submit without waiting,
+     * callers that wait for each write are slowed down by it.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void setCommitWindow(long duration, TimeUnit unit) {
+        this.commitWindow = Math.max(0, unit.toNanos(duration));
+    }
+
+    //--------------------------------------------------------------------------
+    // Write Methods.
+    //--------------------------------------------------------------------------
+    /**
+     * Queues a write. the task runs on the writer thread and must not start,
+     * commit or roll back transactions. the caller waits when the queue is
+     * full.
+     *
+     * @param <T>
+     * @param task
+     * @return completes after the batch of the write is committed.
+     */
+    public <T> CompletableFuture<T> submit(ConnectionTask<T> task) {
+        WriteRequest<T> request = new WriteRequest<>(task);
+        this.closeLock.readLock().lock();
+        try {
+            if (this.closed) {
+                request.future.completeExceptionally(new SQLException("The database is closed."));
+                return request.future;
+            }
+            // the writer is still running while the lock is held, a full queue drains.
+            this.queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(new SQLException("Interrupted while queueing the write.", e));
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+        return request.future;
+    }
+
+    /**
+     * Queues an update statement.
+     *
+     * @param query
+     * @param parameters
+     * @return the number of affected rows.
+     */
+    public CompletableFuture<Integer> submitUpdate(String query, Object... parameters) {
+        return this.submit(con -> con.update(query, parameters));
+    }
+
+    /**
+     * Queues a write and waits for its commit.
+     *
+     * @param <T>
+     * @param task
+     * @return
+     * @throws SQLException
+     */
+    public <T> T write(ConnectionTask<T> task) throws SQLException {
+        try {
+            return this.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Queued update that waits for its commit.
+     *
+     * @see ConnectionManager#update(java.lang.String, java.lang.Object...)
+     * @param query
+     * @param parameters
+     * @return
+     * @throws SQLException
+     */
+    public int update(String query, Object... parameters) throws SQLException {
+        return this.write(con -> con.update(query, parameters));
+    }
+
+    /**
+     * Queued insert that waits for its commit.
+     *
+     * @see ConnectionManager#insert(java.lang.String, java.lang.Object...)
+     * @param <T>
+     * @param query
+     * @param parameters
+     * @return the generated key.
+     * @throws SQLException
+     */
+    public <T> T insert(String query, Object... parameters) throws SQLException {
+        return this.write(con -> con.<T>insert(query, parameters));
+    }
+
+    //--------------------------------------------------------------------------
+    // Read Methods.
+    //--------------------------------------------------------------------------
+    /**
+     * Runs the task with a read only connection. waits when every reader is
+     * busy.
+     *
+     * @param <T>
+     * @param task
+     * @return
+     * @throws SQLException
+     */
+    public <T> T read(ConnectionTask<T> task) throws SQLException {
+        if (this.closed) {
+            throw new SQLException("The database is closed.");
+        }
+        ConnectionManager reader;
+        try {
+            reader = this.readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader.", e);
+        }
+        try {
+            return task.execute(reader);
+        } finally {
+            this.readers.add(reader);
+        }
+    }
+
+    /**
+     * Fetch with a read only connection.
+     *
+     * @see ConnectionManager#fetch(java.lang.String, java.lang.Object...)
+     * @param query
+     * @param parameters
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetch(String query, Object... parameters) throws SQLException {
+        return this.read(con -> con.fetch(query, parameters));
+    }
+
+    //--------------------------------------------------------------------------
+    // Writer Thread.
+    //--------------------------------------------------------------------------
+    private void writeLoop() {
+        List<WriteRequest<?>> batch = new ArrayList<>();
+        boolean stop = false;
+        try {
+            while (!stop) {
+                WriteRequest<?> first = this.queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+                long end = System.nanoTime() + this.commitWindow;
+                while (batch.size() < this.batchSize) {
+                    long wait = end - System.nanoTime();
+                    WriteRequest<?> next = wait > 0
+                            ? this.queue.poll(wait, TimeUnit.NANOSECONDS)
+                            : this.queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                this.commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            SQLException closedError = new SQLException("The database is closed.");
+            batch.forEach(request -> request.future.completeExceptionally(closedError));
+        }
+    }
+
+    /**
+     * Executes a batch in one transaction.
+     *
+     * @param batch
+     */
+    private void commit(List<WriteRequest<?>> batch) {
+        try {
+            this.writer.update("BEGIN IMMEDIATE");
+        } catch (SQLException e) {
+            SQLiteDatabase.fail(batch, e);
+            return;
+        }
+        //----------------------------------------------------------------------
+        for (WriteRequest<?> request : batch) {
+            try {
+                this.writer.update("SAVEPOINT polaris_write");
+                request.execute(this.writer);
+                this.writer.update("RELEASE polaris_write");
+            } catch (SQLException | RuntimeException e) {
+                request.error = e;
+                try {
+                    this.writer.update("ROLLBACK TO polaris_write");
+                    this.writer.update("RELEASE polaris_write");
+                } catch (SQLException rollbackError) {
+                    // the transaction is lost, the whole batch fails.
+                    this.rollbackQuietly();
+                    SQLiteDatabase.fail(batch, rollbackError);
+                    return;
+                }
+            }
+        }
+        //----------------------------------------------------------------------
+        try {
+            this.writer.update("COMMIT");
+        } catch (SQLException e) {
+            this.rollbackQuietly();
+            SQLiteDatabase.fail(batch, e);
+            return;
+        }
+        batch.forEach(WriteRequest::complete);
+    }
+
+    private void rollbackQuietly() {
+        try {
+            this.writer.update("ROLLBACK");
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Cannot roll back the write batch -> {0}", e.toString());
+        }
+    }
+
+    private static void fail(List<WriteRequest<?>> batch, SQLException e) {
+        for (WriteRequest<?> request : batch) {
+            request.error = request.error == null ? e : request.error;
+            request.complete();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Implemented Methods.
+    //--------------------------------------------------------------------------
+    /**
+     * Commits the queued writes then closes every connection.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+        try {
+            this.queue.put(STOP);
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.writerThread.interrupt();
+        }
+        //----------------------------------------------------------------------
+        // writes queued while closing.
+        List<WriteRequest<?>> late = new ArrayList<>();
+        this.queue.drainTo(late);
+        late.remove(STOP);
+        SQLException closedError = new SQLException("The database is closed.");
+        late.forEach(request -> request.future.completeExceptionally(closedError));
+        //----------------------------------------------------------------------
+        this.readerConnections.forEach(ConnectionManager::closeQuietly);
+        this.writer.close();
+    }
+
+}
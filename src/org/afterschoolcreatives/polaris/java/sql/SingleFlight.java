@@ -0,0 +1,285 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.binder.BoundParameter;
+import org.afterschoolcreatives.polaris.java.sql.builder.QueryBuilder;
+
+/**
+ * Coalesces identical fetches that are running at the same time. the first
+ * caller of a query runs it, callers that arrive with the same SQL text and
+ * parameters while it is running wait for it and receive a copy of its result
+ * instead of sending the same query again. nothing is kept after the query
+ * completes, this is not a cache.
+ *
+ * <pre>
+ * SingleFlight flight = new SingleFlight(factory);
+ * DataSet rows = flight.fetch("SELECT * FROM config WHERE app = ?", app);
+ * </pre>
+ *
+ * only use this for reads that do not depend on the caller's transaction.
+ *
+ * @author Jhon Melvin
+ */
+public class SingleFlight {
+
+    /**
+     * Query text and parameter values.
+     */
+    private final static class Key {
+
+        private final String query;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(String query, Object[] parameters) {
+            this.query = query;
+            this.values = new Object[parameters == null ? 0 : parameters.length];
+            for (int index = 0; index < this.values.length; index++) {
+                Object parameter = parameters[index];
+                this.values[index] = parameter instanceof BoundParameter
+                        ? ((BoundParameter) parameter).getValue() : parameter;
+            }
+            this.hash = 31 * query.hashCode() + Arrays.deepHashCode(this.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hash == other.hash
+                    && this.query.equals(other.query)
+                    && Arrays.deepEquals(this.values, other.values);
+        }
+    }
+
+    /**
+     * A running query and the callers waiting for it.
+     */
+    private final static class Flight {
+
+        private final CompletableFuture<DataSet> result = new CompletableFuture<>();
+        private int waiters;
+        private boolean landed;
+
+        /**
+         *
+         * @return false if the result was already handed to the leader.
+         */
+        private synchronized boolean join() {
+            if (this.landed) {
+                return false;
+            }
+            this.waiters++;
+            return true;
+        }
+
+        /**
+         * No more callers can join after this.
+         *
+         * @return the number of callers that joined.
+         */
+        private synchronized int land() {
+            this.landed = true;
+            return this.waiters;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final Map<Key, Flight> flights;
+    private final AtomicLong executed;
+    private final AtomicLong shared;
+
+    /**
+     * Fetches with new connections from the factory.
+     *
+     * @param factory
+     */
+    public SingleFlight(ConnectionFactory factory) {
+        this.factory = factory;
+        this.flights = new ConcurrentHashMap<>();
+        this.executed = new AtomicLong();
+        this.shared = new AtomicLong();
+    }
+
+    /**
+     * Execute a fetch or join the identical fetch that is already running.
+     *
+     * @param query SQL Statement.
+     * @param parameters parameters
+     * @return the result, every caller receives its own data set.
+     * @throws SQLException
+     */
+    public DataSet fetch(String query, Object... parameters) throws SQLException {
+        return this.fetch(null, query, parameters);
+    }
+
+    /**
+     * Execute a fetch using a query builder.
+     *
+     * @see SingleFlight#fetch(java.lang.String, java.lang.Object...)
+     * @param builder
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetch(QueryBuilder builder) throws SQLException {
+        return this.fetch(null, builder.getQueryString(), builder.getParameters());
+    }
+
+    /**
+     * Execute a fetch on the given connection if this caller runs the query,
+     * otherwise the connection is not used.
+     *
+     * @param con the connection of the caller, null to use the factory.
+     * @param query SQL Statement.
+     * @param parameters parameters
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetch(ConnectionManager con, String query, Object... parameters) throws SQLException {
+        Key key = new Key(query, parameters);
+        while (true) {
+            Flight flight = new Flight();
+            Flight running = this.flights.putIfAbsent(key, flight);
+            if (running == null) {
+                return this.lead(key, flight, con, query, parameters);
+            }
+            if (running.join()) {
+                this.shared.incrementAndGet();
+                return SingleFlight.copyOf(SingleFlight.await(running));
+            }
+            // landed between the lookup and the join, try again.
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Runs the query for all callers.
+     */
+    private DataSet lead(Key key, Flight flight, ConnectionManager con, String query, Object[] parameters) throws SQLException {
+        DataSet result;
+        try {
+            this.executed.incrementAndGet();
+            if (con != null) {
+                result = con.fetch(query, parameters);
+            } else {
+                try (ConnectionManager own = this.factory.createConnectionManager()) {
+                    result = own.fetch(query, parameters);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            this.flights.remove(key, flight);
+            flight.land();
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+        this.flights.remove(key, flight);
+        flight.result.complete(result);
+        // the waiters copy the result, keep it unchanged while they do.
+        return flight.land() == 0 ? result : SingleFlight.copyOf(result);
+    }
+
+    /**
+     * Waits for the leader of the flight.
+     */
+    private static DataSet await(Flight flight) throws SQLException {
+        try {
+            return flight.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                throw new SQLException(sqlException.getMessage(), sqlException.getSQLState(),
+                        sqlException.getErrorCode(), sqlException);
+            }
+            throw new PolarisRuntimeException("Shared query failed.", cause);
+        }
+    }
+
+    /**
+     * Copies the rows so callers can change their result.
+     */
+    private static DataSet copyOf(DataSet source) {
+        DataSet copy = new DataSet();
+        copy.ensureCapacity(source.size());
+        for (DataRow row : source) {
+            DataRow rowCopy = new DataRow(row.size());
+            rowCopy.putAll(row);
+            copy.add(rowCopy);
+        }
+        return copy;
+    }
+
+    //--------------------------------------------------------------------------
+    // Statistics.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @return the number of queries sent to the database.
+     */
+    public long getExecutedCount() {
+        return this.executed.get();
+    }
+
+    /**
+     *
+     * @return the number of callers that received the result of another
+     * caller's query.
+     */
+    public long getSharedCount() {
+        return this.shared.get();
+    }
+
+    /**
+     *
+     * @return the number of queries running now.
+     */
+    public int getInFlightCount() {
+        return this.flights.size();
+    }
+
+}
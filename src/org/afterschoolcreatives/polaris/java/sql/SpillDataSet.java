@@ -0,0 +1,348 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.codec.ByteInput;
+import org.afterschoolcreatives.polaris.java.sql.codec.RowCodec;
+
+/**
+ * A data set that keeps rows in memory up to a row or byte threshold, further
+ * rows are written to a temporary file in the compact row format of RowCodec
+ * and read back through memory mapped buffers. an offset index allows random
+ * access with get.
+ *
+ * All rows must have the same columns as the first row. this is not a DataSet
+ * since DataSet keeps every row in its backing list, use get, size and
+ * iteration instead.
+ *
+ * <pre>
+ * try (SpillDataSet result = new SpillDataSet(64 * 1024 * 1024, 100_000)) {
+ *     con.fetchEach(query, result::add);
+ *     for (DataRow row : result) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public class SpillDataSet implements Iterable<DataRow>, RowHandler, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SpillDataSet.class.getName());
+
+    /**
+     * Maximum size of one mapped segment.
+     */
+    private final static long SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final long memoryBudget;
+    private final int memoryRowLimit;
+    //--------------------------------------------------------------------------
+    // Memory Rows.
+    //--------------------------------------------------------------------------
+    private final List<DataRow> memoryRows;
+    private long memoryBytes;
+    //--------------------------------------------------------------------------
+    // Spilled Rows.
+    //--------------------------------------------------------------------------
+    private String[] columns;
+    private File spillFile;
+    private OutputStream spillStream;
+    private final ByteArrayOutputStream rowBuffer;
+    /**
+     * Offset of each spilled row in the file.
+     */
+    private long[] offsets;
+    private int spilledRows;
+    private long spillLength;
+    /**
+     * Start offset of each mapped segment, segments start at a row boundary.
+     */
+    private final List<Long> segmentStarts;
+    private MappedByteBuffer[] segments;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param memoryBudget estimated bytes kept in memory before spilling.
+     * @param memoryRowLimit rows kept in memory before spilling.
+     */
+    public SpillDataSet(long memoryBudget, int memoryRowLimit) {
+        this.memoryBudget = memoryBudget;
+        this.memoryRowLimit = memoryRowLimit;
+        this.memoryRows = new ArrayList<>(Math.min(Math.max(memoryRowLimit, 0), 1024));
+        this.memoryBytes = 0;
+        this.columns = null;
+        this.spillFile = null;
+        this.spillStream = null;
+        this.rowBuffer = new ByteArrayOutputStream(256);
+        this.offsets = new long[0];
+        this.spilledRows = 0;
+        this.spillLength = 0;
+        this.segmentStarts = new ArrayList<>();
+        this.segments = null;
+        this.closed = false;
+    }
+
+    //--------------------------------------------------------------------------
+    // Writing.
+    //--------------------------------------------------------------------------
+    /**
+     * Row handler, same as add.
+     *
+     * @param row
+     * @throws SQLException
+     */
+    @Override
+    public void handle(DataRow row) throws SQLException {
+        this.add(row);
+    }
+
+    /**
+     * Adds a row, spills to the disk when the thresholds are reached.
+     *
+     * @param row
+     */
+    public void add(DataRow row) {
+        this.checkOpen();
+        if (this.columns == null) {
+            this.columns = row.keySet().toArray(new String[row.size()]);
+        }
+        if (this.spillFile == null) {
+            long rowBytes = row.estimateSize();
+            if (this.memoryRows.size() < this.memoryRowLimit
+                    && this.memoryBytes + rowBytes <= this.memoryBudget) {
+                this.memoryRows.add(row);
+                this.memoryBytes += rowBytes;
+                return;
+            }
+        }
+        this.spill(row);
+    }
+
+    /**
+     * Writes the row to the spill file.
+     *
+     * @param row
+     */
+    private void spill(DataRow row) {
+        if (row.size() != this.columns.length) {
+            throw new PolarisRuntimeException("Row columns does not match the columns of the data set.");
+        }
+        try {
+            if (this.spillFile == null) {
+                this.spillFile = File.createTempFile("polaris-spill-", ".rows");
+                this.spillStream = new BufferedOutputStream(new FileOutputStream(this.spillFile), 64 * 1024);
+                this.segmentStarts.add(0L);
+            }
+            this.rowBuffer.reset();
+            RowCodec.writeRow(this.rowBuffer, row, this.columns);
+            int length = this.rowBuffer.size();
+            //------------------------------------------------------------------
+            // start a new segment if this row does not fit in the current one.
+            long segmentStart = this.segmentStarts.get(this.segmentStarts.size() - 1);
+            if (this.spillLength + length - segmentStart > SEGMENT_SIZE) {
+                this.segmentStarts.add(this.spillLength);
+            }
+            //------------------------------------------------------------------
+            if (this.spilledRows == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, Math.max(1024, this.offsets.length * 2));
+            }
+            this.offsets[this.spilledRows++] = this.spillLength;
+            this.rowBuffer.writeTo(this.spillStream);
+            this.spillLength += length;
+            this.segments = null; // mapping is outdated.
+        } catch (IOException e) {
+            this.close(); // rows after the failed one are lost, drop the file.
+            throw new PolarisRuntimeException("Cannot write row to the spill file.", e);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Reading.
+    //--------------------------------------------------------------------------
+    public int size() {
+        return this.memoryRows.size() + this.spilledRows;
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Checks whether some rows were written to the disk.
+     *
+     * @return
+     */
+    public boolean isSpilled() {
+        return this.spilledRows > 0;
+    }
+
+    public int getSpilledRows() {
+        return spilledRows;
+    }
+
+    /**
+     * Estimated bytes of the rows in memory.
+     *
+     * @return
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Gets a row, spilled rows are decoded on every call.
+     *
+     * @param index
+     * @return
+     */
+    public DataRow get(int index) {
+        this.checkOpen();
+        if (index < 0 || index >= this.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+        }
+        if (index < this.memoryRows.size()) {
+            return this.memoryRows.get(index);
+        }
+        return this.readSpilled(index - this.memoryRows.size());
+    }
+
+    @Override
+    public Iterator<DataRow> iterator() {
+        return new Iterator<DataRow>() {
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.cursor < SpillDataSet.this.size();
+            }
+
+            @Override
+            public DataRow next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return SpillDataSet.this.get(this.cursor++);
+            }
+        };
+    }
+
+    /**
+     * Decodes a spilled row from the mapped segments.
+     *
+     * @param spilledIndex
+     * @return
+     */
+    private DataRow readSpilled(int spilledIndex) {
+        try {
+            this.mapSegments();
+            long offset = this.offsets[spilledIndex];
+            int segment = this.segmentStarts.size() - 1;
+            while (this.segmentStarts.get(segment) > offset) {
+                segment--;
+            }
+            ByteBuffer buffer = this.segments[segment].duplicate();
+            buffer.position((int) (offset - this.segmentStarts.get(segment)));
+            return RowCodec.readRow(ByteInput.of(buffer), this.columns);
+        } catch (IOException e) {
+            throw new PolarisRuntimeException("Cannot read row from the spill file.", e);
+        }
+    }
+
+    /**
+     * Flushes the pending writes and maps the spill file.
+     *
+     * @throws IOException
+     */
+    private void mapSegments() throws IOException {
+        if (this.segments != null) {
+            return;
+        }
+        this.spillStream.flush();
+        MappedByteBuffer[] mapped = new MappedByteBuffer[this.segmentStarts.size()];
+        try (RandomAccessFile file = new RandomAccessFile(this.spillFile, "r");
+                FileChannel channel = file.getChannel()) {
+            for (int index = 0; index < mapped.length; index++) {
+                long start = this.segmentStarts.get(index);
+                long end = (index + 1 < mapped.length) ? this.segmentStarts.get(index + 1) : this.spillLength;
+                mapped[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+        }
+        this.segments = mapped;
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new PolarisRuntimeException("This data set is already closed.");
+        }
+    }
+
+    /**
+     * Releases the rows and deletes the spill file.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.memoryRows.clear();
+        this.segments = null;
+        if (this.spillStream != null) {
+            try {
+                this.spillStream.close();
+            } catch (IOException e) {
+                // ignore error.
+            }
+        }
+        if (this.spillFile != null && this.spillFile.exists() && !this.spillFile.delete()) {
+            // mapped files cannot be deleted on some platforms until unmapped.
+            LOGGER.log(Level.WARNING, "Cannot delete spill file {0}", this.spillFile);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.binder;
+
+/**
+ * Binders for a statement resolved once from the declared parameter types.
+ * keep an instance beside the SQL string and use it to wrap the values on
+ * every execution, null values will be sent as typed null.
+ *
+ * <pre>
+ * BinderTemplate template = new BinderTemplate(Integer.class, String.class);
+ * con.fetch(SQL, template.parameters(id, name));
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public final class BinderTemplate {
+
+    private final ParameterBinder[] binders;
+
+    /**
+     * Constructor.
+     *
+     * @param parameterTypes the type of each parameter in order.
+     */
+    public BinderTemplate(Class<?>... parameterTypes) {
+        this.binders = new ParameterBinder[parameterTypes.length];
+        for (int index = 0; index < parameterTypes.length; index++) {
+            this.binders[index] = ParameterBinders.forType(parameterTypes[index]);
+        }
+    }
+
+    /**
+     * Number of parameters in this template.
+     *
+     * @return
+     */
+    public int size() {
+        return this.binders.length;
+    }
+
+    /**
+     * Wraps the values with the resolved binders.
+     *
+     * @param values
+     * @return parameters that can be passed to the connection manager.
+     */
+    public Object[] parameters(Object... values) {
+        if (values.length != this.binders.length) {
+            throw new IllegalArgumentException("Expected " + this.binders.length + " parameters but received " + values.length);
+        }
+        Object[] parameters = new Object[values.length];
+        for (int index = 0; index < values.length; index++) {
+            parameters[index] = new BoundParameter(this.binders[index], values[index]);
+        }
+        return parameters;
+    }
+
+}
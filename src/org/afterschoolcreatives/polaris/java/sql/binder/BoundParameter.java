@@ -0,0 +1,96 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.binder;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A parameter value that already knows its binder. pass this as a parameter
+ * to the connection manager to skip type resolution or to send a typed null.
+ *
+ * @author Jhon Melvin
+ */
+public final class BoundParameter {
+
+    private final ParameterBinder binder;
+    private final Object value;
+
+    /**
+     * Constructor.
+     *
+     * @param binder
+     * @param value
+     */
+    public BoundParameter(ParameterBinder binder, Object value) {
+        if (binder == null) {
+            throw new NullPointerException("Parameter Binder must not be null");
+        }
+        this.binder = binder;
+        this.value = value;
+    }
+
+    public ParameterBinder getBinder() {
+        return binder;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Two bound parameters are equal when their binders are of the same kind
+     * and SQL type and their values are equal, arrays are compared by
+     * content.
+     *
+     * @param obj
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BoundParameter)) {
+            return false;
+        }
+        BoundParameter other = (BoundParameter) obj;
+        return this.binder.getClass() == other.binder.getClass()
+                && this.binder.getSqlType() == other.binder.getSqlType()
+                && Objects.deepEquals(this.value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.binder.getSqlType() + Arrays.deepHashCode(new Object[]{this.value});
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.value);
+    }
+
+}
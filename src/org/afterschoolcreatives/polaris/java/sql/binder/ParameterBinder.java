@@ -0,0 +1,58 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.binder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds a single parameter value to a prepared statement using the setter
+ * that matches its Java type. this way the driver does not need to inspect the
+ * value at runtime like it does with setObject.
+ *
+ * @author Jhon Melvin
+ */
+public interface ParameterBinder {
+
+    /**
+     * The JDBC type used when the bound value is null.
+     *
+     * @return a value from java.sql.Types.
+     */
+    int getSqlType();
+
+    /**
+     * Binds the value to the statement. null values are bound as typed null
+     * using the SQL type of this binder.
+     *
+     * @param preparedStatement
+     * @param index parameter index starting at 1.
+     * @param value
+     * @throws SQLException
+     */
+    void bind(PreparedStatement preparedStatement, int index, Object value) throws SQLException;
+
+}
@@ -0,0 +1,379 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.binder;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.afterschoolcreatives.polaris.java.util.PolarisWrapper;
+
+/**
+ * Standard parameter binders and the resolver that picks one for a Java type.
+ * resolved binders are cached per class so the lookup is done only once.
+ *
+ * @author Jhon Melvin
+ */
+public final class ParameterBinders {
+
+    /**
+     * Sets a non null value to the statement.
+     */
+    @FunctionalInterface
+    private interface ValueSetter {
+
+        void set(PreparedStatement preparedStatement, int index, Object value) throws SQLException;
+    }
+
+    /**
+     * Binder that sends typed null for null values.
+     */
+    private final static class TypedBinder implements ParameterBinder {
+
+        private final int sqlType;
+        private final ValueSetter setter;
+
+        private TypedBinder(int sqlType, ValueSetter setter) {
+            this.sqlType = sqlType;
+            this.setter = setter;
+        }
+
+        @Override
+        public int getSqlType() {
+            return this.sqlType;
+        }
+
+        @Override
+        public void bind(PreparedStatement preparedStatement, int index, Object value) throws SQLException {
+            if (value == null) {
+                preparedStatement.setNull(index, this.sqlType);
+            } else {
+                this.setter.set(preparedStatement, index, value);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Standard Binders.
+    //--------------------------------------------------------------------------
+    public final static ParameterBinder BOOLEAN = new TypedBinder(Types.BOOLEAN,
+            (ps, i, v) -> ps.setBoolean(i, (Boolean) v));
+    public final static ParameterBinder BYTE = new TypedBinder(Types.TINYINT,
+            (ps, i, v) -> ps.setByte(i, ((Number) v).byteValue()));
+    public final static ParameterBinder SHORT = new TypedBinder(Types.SMALLINT,
+            (ps, i, v) -> ps.setShort(i, ((Number) v).shortValue()));
+    public final static ParameterBinder INTEGER = new TypedBinder(Types.INTEGER,
+            (ps, i, v) -> ps.setInt(i, ((Number) v).intValue()));
+    public final static ParameterBinder LONG = new TypedBinder(Types.BIGINT,
+            (ps, i, v) -> ps.setLong(i, ((Number) v).longValue()));
+    public final static ParameterBinder FLOAT = new TypedBinder(Types.REAL,
+            (ps, i, v) -> ps.setFloat(i, ((Number) v).floatValue()));
+    public final static ParameterBinder DOUBLE = new TypedBinder(Types.DOUBLE,
+            (ps, i, v) -> ps.setDouble(i, ((Number) v).doubleValue()));
+    public final static ParameterBinder CHARACTER = new TypedBinder(Types.CHAR,
+            (ps, i, v) -> ps.setString(i, String.valueOf(v)));
+    public final static ParameterBinder STRING = new TypedBinder(Types.VARCHAR,
+            (ps, i, v) -> ps.setString(i, (String) v));
+    public final static ParameterBinder BIG_DECIMAL = new TypedBinder(Types.DECIMAL,
+            (ps, i, v) -> ps.setBigDecimal(i, (BigDecimal) v));
+    public final static ParameterBinder BYTES = new TypedBinder(Types.VARBINARY,
+            (ps, i, v) -> ps.setBytes(i, (byte[]) v));
+    public final static ParameterBinder BINARY_STREAM = new TypedBinder(Types.LONGVARBINARY,
+            (ps, i, v) -> ps.setBinaryStream(i, (InputStream) v));
+    public final static ParameterBinder CHARACTER_STREAM = new TypedBinder(Types.LONGVARCHAR,
+            (ps, i, v) -> ps.setCharacterStream(i, (Reader) v));
+    //--------------------------------------------------------------------------
+    // Date and Time, converted to java.sql types since not all drivers
+    // supports JDBC 4.2 java.time objects.
+    //--------------------------------------------------------------------------
+    public final static ParameterBinder SQL_DATE = new TypedBinder(Types.DATE,
+            (ps, i, v) -> ps.setDate(i, (java.sql.Date) v));
+    public final static ParameterBinder SQL_TIME = new TypedBinder(Types.TIME,
+            (ps, i, v) -> ps.setTime(i, (Time) v));
+    public final static ParameterBinder TIMESTAMP = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, (Timestamp) v));
+    public final static ParameterBinder UTIL_DATE = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, new Timestamp(((java.util.Date) v).getTime())));
+    public final static ParameterBinder LOCAL_DATE = new TypedBinder(Types.DATE,
+            (ps, i, v) -> ps.setDate(i, java.sql.Date.valueOf((LocalDate) v)));
+    public final static ParameterBinder LOCAL_TIME = new TypedBinder(Types.TIME,
+            (ps, i, v) -> ps.setTime(i, Time.valueOf((LocalTime) v)));
+    public final static ParameterBinder LOCAL_DATE_TIME = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, Timestamp.valueOf((LocalDateTime) v)));
+    public final static ParameterBinder INSTANT = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, Timestamp.from((Instant) v)));
+    public final static ParameterBinder OFFSET_DATE_TIME = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, Timestamp.from(((OffsetDateTime) v).toInstant())));
+    public final static ParameterBinder ZONED_DATE_TIME = new TypedBinder(Types.TIMESTAMP,
+            (ps, i, v) -> ps.setTimestamp(i, Timestamp.from(((ZonedDateTime) v).toInstant())));
+    /**
+     * Fallback for unknown types. null values are still sent with setObject to
+     * keep the previous behavior since the type is not known.
+     */
+    public final static ParameterBinder OBJECT = new ParameterBinder() {
+        @Override
+        public int getSqlType() {
+            return Types.JAVA_OBJECT;
+        }
+
+        @Override
+        public void bind(PreparedStatement preparedStatement, int index, Object value) throws SQLException {
+            preparedStatement.setObject(index, value);
+        }
+    };
+
+    //--------------------------------------------------------------------------
+    /**
+     * Binders by exact class. primitives are mapped to the same binder as
+     * their wrapper.
+     */
+    private final static Map<Class<?>, ParameterBinder> EXACT_BINDERS = new ConcurrentHashMap<>();
+    /**
+     * Cache of resolved binders for classes that are not directly mapped.
+     */
+    private final static Map<Class<?>, ParameterBinder> RESOLVED_BINDERS = new ConcurrentHashMap<>();
+
+    static {
+        register(BOOLEAN, Boolean.class, boolean.class);
+        register(BYTE, Byte.class, byte.class);
+        register(SHORT, Short.class, short.class);
+        register(INTEGER, Integer.class, int.class);
+        register(LONG, Long.class, long.class);
+        register(FLOAT, Float.class, float.class);
+        register(DOUBLE, Double.class, double.class);
+        register(CHARACTER, Character.class, char.class);
+        register(STRING, String.class);
+        register(BIG_DECIMAL, BigDecimal.class);
+        register(BYTES, byte[].class);
+        register(SQL_DATE, java.sql.Date.class);
+        register(SQL_TIME, Time.class);
+        register(TIMESTAMP, Timestamp.class);
+        register(UTIL_DATE, java.util.Date.class);
+        register(LOCAL_DATE, LocalDate.class);
+        register(LOCAL_TIME, LocalTime.class);
+        register(LOCAL_DATE_TIME, LocalDateTime.class);
+        register(INSTANT, Instant.class);
+        register(OFFSET_DATE_TIME, OffsetDateTime.class);
+        register(ZONED_DATE_TIME, ZonedDateTime.class);
+    }
+
+    private static void register(ParameterBinder binder, Class<?>... types) {
+        for (Class<?> type : types) {
+            EXACT_BINDERS.put(type, binder);
+        }
+    }
+
+    /**
+     * Static class.
+     */
+    private ParameterBinders() {
+        // no - op
+    }
+
+    /**
+     * Resolves the binder for a Java type. resolve this once per column or
+     * per statement template and reuse the binder.
+     *
+     * @param type
+     * @return the binder, OBJECT if the type is not supported.
+     */
+    public static ParameterBinder forType(Class<?> type) {
+        if (type == null) {
+            return OBJECT;
+        }
+        ParameterBinder binder = EXACT_BINDERS.get(type);
+        if (binder != null) {
+            return binder;
+        }
+        return RESOLVED_BINDERS.computeIfAbsent(type, ParameterBinders::resolveAssignable);
+    }
+
+    /**
+     * Resolves the binder for a value.
+     *
+     * @param value
+     * @return
+     */
+    public static ParameterBinder forValue(Object value) {
+        if (value instanceof BoundParameter) {
+            return ((BoundParameter) value).getBinder();
+        }
+        return value == null ? OBJECT : forType(value.getClass());
+    }
+
+    /**
+     * Walks the super types for sub classes of streams and dates.
+     *
+     * @param type
+     * @return
+     */
+    private static ParameterBinder resolveAssignable(Class<?> type) {
+        if (InputStream.class.isAssignableFrom(type)) {
+            return BINARY_STREAM;
+        } else if (Reader.class.isAssignableFrom(type)) {
+            return CHARACTER_STREAM;
+        } else if (Timestamp.class.isAssignableFrom(type)) {
+            return TIMESTAMP;
+        } else if (java.sql.Date.class.isAssignableFrom(type)) {
+            return SQL_DATE;
+        } else if (Time.class.isAssignableFrom(type)) {
+            return SQL_TIME;
+        } else if (java.util.Date.class.isAssignableFrom(type)) {
+            return UTIL_DATE;
+        } else if (BigDecimal.class.isAssignableFrom(type)) {
+            return BIG_DECIMAL;
+        }
+        return OBJECT;
+    }
+
+    //--------------------------------------------------------------------------
+    // Parameter Helpers.
+    //--------------------------------------------------------------------------
+    /**
+     * Creates a typed null parameter.
+     *
+     * @param sqlType a value from java.sql.Types.
+     * @return
+     */
+    public static BoundParameter nullOf(int sqlType) {
+        return new BoundParameter(new TypedBinder(sqlType, (ps, i, v) -> ps.setObject(i, v, sqlType)), null);
+    }
+
+    /**
+     * Creates a typed null parameter from a Java type.
+     *
+     * @param type
+     * @return
+     */
+    public static BoundParameter nullOf(Class<?> type) {
+        return new BoundParameter(forType(type), null);
+    }
+
+    /**
+     * Wraps a value with the binder of the declared type, used for entity
+     * columns where the field type is known even if the value is null.
+     *
+     * @param type
+     * @param value
+     * @return
+     */
+    public static BoundParameter bound(Class<?> type, Object value) {
+        return bound(forType(type), type, value);
+    }
+
+    /**
+     * Wraps a value with an already resolved binder of the declared type. if
+     * the value is not an instance of the declared type the binder of the
+     * value is used instead.
+     *
+     * @param binder binder resolved from the declared type.
+     * @param type the declared type.
+     * @param value
+     * @return
+     */
+    public static BoundParameter bound(ParameterBinder binder, Class<?> type, Object value) {
+        if (value != null && type != null && !PolarisWrapper.autoBox(type).isInstance(value)) {
+            binder = forValue(value);
+        }
+        return new BoundParameter(binder, value);
+    }
+
+    /**
+     * Wraps a binary stream so the driver reads it while executing instead of
+     * the value being loaded as a byte array. pass the length when it is known,
+     * some drivers needs it to send the value without buffering it.
+     *
+     * @param stream
+     * @param length the number of bytes, negative if unknown.
+     * @return
+     */
+    public static BoundParameter bindStream(InputStream stream, long length) {
+        if (length < 0) {
+            return new BoundParameter(BINARY_STREAM, stream);
+        }
+        if (length <= Integer.MAX_VALUE) {
+            // the int overload is older and supported by more drivers.
+            return new BoundParameter(new TypedBinder(Types.LONGVARBINARY,
+                    (ps, i, v) -> ps.setBinaryStream(i, (InputStream) v, (int) length)), stream);
+        }
+        return new BoundParameter(new TypedBinder(Types.LONGVARBINARY,
+                (ps, i, v) -> ps.setBinaryStream(i, (InputStream) v, length)), stream);
+    }
+
+    /**
+     * Wraps a character stream so the driver reads it while executing.
+     *
+     * @param reader
+     * @param length the number of characters, negative if unknown.
+     * @return
+     */
+    public static BoundParameter bindReader(Reader reader, long length) {
+        if (length < 0) {
+            return new BoundParameter(CHARACTER_STREAM, reader);
+        }
+        if (length <= Integer.MAX_VALUE) {
+            return new BoundParameter(new TypedBinder(Types.LONGVARCHAR,
+                    (ps, i, v) -> ps.setCharacterStream(i, (Reader) v, (int) length)), reader);
+        }
+        return new BoundParameter(new TypedBinder(Types.LONGVARCHAR,
+                (ps, i, v) -> ps.setCharacterStream(i, (Reader) v, length)), reader);
+    }
+
+    /**
+     * Binds all parameters to the statement.
+     *
+     * @param preparedStatement
+     * @param parameters
+     * @throws SQLException
+     */
+    public static void bindAll(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
+        if (parameters == null) {
+            return;
+        }
+        for (int index = 1; index <= parameters.length; index++) {
+            Object parameter = parameters[index - 1];
+            if (parameter instanceof BoundParameter) {
+                BoundParameter bound = (BoundParameter) parameter;
+                bound.getBinder().bind(preparedStatement, index, bound.getValue());
+            } else {
+                forValue(parameter).bind(preparedStatement, index, parameter);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,324 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+
+/**
+ * Keyset (seek) pagination query. instead of skipping rows with OFFSET the next
+ * page is located by comparing the ordering columns with the last seen key, so
+ * deep pages cost the same as the first page when the ordering columns are
+ * indexed.
+ *
+ * <pre>
+ * KeysetQuery query = new KeysetQuery(ConnectionFactory.Driver.MariaDB)
+ *         .select("SELECT * FROM scholar_information")
+ *         .where("deleted_at IS NULL")
+ *         .orderBy("last_name")
+ *         .orderBy("scholar_id")
+ *         .afterToken(token)
+ *         .limit(50);
+ * </pre>
+ *
+ * The ordering columns must be unique when combined, add the primary key as
+ * the last ordering column if needed. one extra row is requested to know if
+ * there is a next page.
+ *
+ * @author Jhon Melvin
+ */
+public class KeysetQuery extends QueryBuilder {
+
+    private final ConnectionFactory.Driver driver;
+    private String selectStatement;
+    private final List<Object> selectParameters;
+    private final List<String> conditions;
+    private final List<Object> conditionParameters;
+    private final List<String> keyColumns;
+    private final List<Boolean> keyDescending;
+    private Object[] lastKey;
+    private int pageSize;
+
+    /**
+     * Constructor.
+     *
+     * @param driver the driver decides the form of the seek predicate.
+     */
+    public KeysetQuery(ConnectionFactory.Driver driver) {
+        super();
+        if (driver == null) {
+            throw new PolarisRuntimeException("The Connection Driver was not assigned.");
+        }
+        this.driver = driver;
+        this.selectStatement = null;
+        this.selectParameters = new ArrayList<>();
+        this.conditions = new ArrayList<>();
+        this.conditionParameters = new ArrayList<>();
+        this.keyColumns = new ArrayList<>();
+        this.keyDescending = new ArrayList<>();
+        this.lastKey = null;
+        this.pageSize = 50;
+    }
+
+    /**
+     * The SELECT and FROM part of the query without WHERE, ORDER BY and
+     * LIMIT.
+     *
+     * @param statement
+     * @param parameters
+     * @return
+     */
+    public KeysetQuery select(String statement, Object... parameters) {
+        this.selectStatement = statement;
+        this.selectParameters.clear();
+        this.selectParameters.addAll(Arrays.asList(parameters));
+        return this;
+    }
+
+    /**
+     * Adds a filter condition, conditions are joined with AND.
+     *
+     * @param condition
+     * @param parameters
+     * @return
+     */
+    public KeysetQuery where(String condition, Object... parameters) {
+        this.conditions.add(condition);
+        this.conditionParameters.addAll(Arrays.asList(parameters));
+        return this;
+    }
+
+    /**
+     * Adds an ascending ordering column.
+     *
+     * @param column
+     * @return
+     */
+    public KeysetQuery orderBy(String column) {
+        this.keyColumns.add(column);
+        this.keyDescending.add(Boolean.FALSE);
+        return this;
+    }
+
+    /**
+     * Adds a descending ordering column.
+     *
+     * @param column
+     * @return
+     */
+    public KeysetQuery orderByDescending(String column) {
+        this.keyColumns.add(column);
+        this.keyDescending.add(Boolean.TRUE);
+        return this;
+    }
+
+    /**
+     * The ordering column values of the last row of the previous page. null
+     * or empty starts from the first page.
+     *
+     * @param key
+     * @return
+     */
+    public KeysetQuery after(Object... key) {
+        this.lastKey = (key == null || key.length == 0) ? null : key;
+        return this;
+    }
+
+    /**
+     * Continue from a page continuation token. null starts from the first
+     * page.
+     *
+     * @param token
+     * @return
+     */
+    public KeysetQuery afterToken(String token) {
+        this.lastKey = (token == null || token.isEmpty()) ? null : PageToken.decode(token);
+        return this;
+    }
+
+    /**
+     * Number of rows per page.
+     *
+     * @param pageSize
+     * @return
+     */
+    public KeysetQuery limit(int pageSize) {
+        if (pageSize < 1) {
+            throw new PolarisRuntimeException("Page size must be greater than zero.");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public ConnectionFactory.Driver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Reads the key of a row using the labels of the ordering columns.
+     *
+     * @param row a getter by column label.
+     * @return the key values in order.
+     */
+    public Object[] readKey(Function<String, Object> row) {
+        Object[] key = new Object[this.keyColumns.size()];
+        for (int index = 0; index < key.length; index++) {
+            key[index] = row.apply(KeysetQuery.columnLabel(this.keyColumns.get(index)));
+        }
+        return key;
+    }
+
+    /**
+     * Removes the table qualifier and escape characters to get the label of
+     * the column in the result set.
+     *
+     * @param column
+     * @return
+     */
+    private static String columnLabel(String column) {
+        String label = column.trim();
+        int dot = label.lastIndexOf('.');
+        if (dot >= 0) {
+            label = label.substring(dot + 1);
+        }
+        return label.replace("`", "").replace("\"", "");
+    }
+
+    @Override
+    public String getQueryString() {
+        this.build();
+        return super.getQueryString();
+    }
+
+    @Override
+    public Object[] getParameters() {
+        this.build();
+        return super.getParameters();
+    }
+
+    /**
+     * Builds the query and the parameters in order.
+     */
+    private void build() {
+        if (this.selectStatement == null) {
+            throw new PolarisRuntimeException("No SELECT statement was given.");
+        }
+        if (this.keyColumns.isEmpty()) {
+            throw new PolarisRuntimeException("Keyset pagination requires at least one ordering column.");
+        }
+        if (this.lastKey != null && this.lastKey.length != this.keyColumns.size()) {
+            throw new PolarisRuntimeException("The last key has " + this.lastKey.length
+                    + " values but there are " + this.keyColumns.size() + " ordering columns.");
+        }
+        this.queryString.setLength(0);
+        this.parameterList.clear();
+        //----------------------------------------------------------------------
+        this.queryString.append(this.selectStatement);
+        this.parameterList.addAll(this.selectParameters);
+        //----------------------------------------------------------------------
+        // WHERE
+        //----------------------------------------------------------------------
+        List<String> predicates = new ArrayList<>();
+        for (String condition : this.conditions) {
+            predicates.add("(" + condition + ")");
+        }
+        this.parameterList.addAll(this.conditionParameters);
+        if (this.lastKey != null) {
+            predicates.add(this.seekPredicate());
+        }
+        if (!predicates.isEmpty()) {
+            this.queryString.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+        //----------------------------------------------------------------------
+        // ORDER BY
+        //----------------------------------------------------------------------
+        this.queryString.append(" ORDER BY ");
+        for (int index = 0; index < this.keyColumns.size(); index++) {
+            if (index > 0) {
+                this.queryString.append(", ");
+            }
+            this.queryString.append(this.keyColumns.get(index))
+                    .append(this.keyDescending.get(index) ? " DESC" : " ASC");
+        }
+        //----------------------------------------------------------------------
+        // LIMIT, one extra row to check the next page.
+        //----------------------------------------------------------------------
+        this.queryString.append(" LIMIT ?");
+        this.parameterList.add(this.pageSize + 1);
+    }
+
+    /**
+     * Creates the predicate that skips the rows up to the last key and adds
+     * its parameters.
+     *
+     * @return
+     */
+    private String seekPredicate() {
+        //----------------------------------------------------------------------
+        // Row value comparison (a, b) > (?, ?) is used on PostgreSQL and SQLite
+        // when all columns have the same direction. MySQL and MariaDB do not
+        // use the index well for row values so the expanded form is used.
+        //----------------------------------------------------------------------
+        boolean sameDirection = !this.keyDescending.contains(!this.keyDescending.get(0));
+        boolean rowValues = sameDirection && this.keyColumns.size() > 1
+                && (this.driver == ConnectionFactory.Driver.PostgreSQL
+                || this.driver == ConnectionFactory.Driver.SQLite);
+        if (rowValues) {
+            String operator = this.keyDescending.get(0) ? " < " : " > ";
+            StringBuilder marks = new StringBuilder();
+            for (int index = 0; index < this.keyColumns.size(); index++) {
+                marks.append(index == 0 ? "?" : ", ?");
+            }
+            this.parameterList.addAll(Arrays.asList(this.lastKey));
+            return "(" + String.join(", ", this.keyColumns) + ")" + operator + "(" + marks + ")";
+        }
+        //----------------------------------------------------------------------
+        // Expanded form: (a > ?) OR (a = ? AND b > ?) ...
+        //----------------------------------------------------------------------
+        List<String> branches = new ArrayList<>();
+        for (int branch = 0; branch < this.keyColumns.size(); branch++) {
+            StringBuilder clause = new StringBuilder();
+            for (int index = 0; index < branch; index++) {
+                clause.append(this.keyColumns.get(index)).append(" = ? AND ");
+                this.parameterList.add(this.lastKey[index]);
+            }
+            clause.append(this.keyColumns.get(branch))
+                    .append(this.keyDescending.get(branch) ? " < ?" : " > ?");
+            this.parameterList.add(this.lastKey[branch]);
+            branches.add("(" + clause + ")");
+        }
+        return "(" + String.join(" OR ", branches) + ")";
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+
+/**
+ * Encodes the last seen key of a page into an opaque URL safe string so it can
+ * be sent to a client and used to request the next page.
+ *
+ * @author Jhon Melvin
+ */
+public final class PageToken {
+
+    /**
+     * Token format version.
+     */
+    private final static int VERSION = 1;
+
+    //--------------------------------------------------------------------------
+    // Value Tags.
+    //--------------------------------------------------------------------------
+    private final static byte TAG_INTEGER = 'I';
+    private final static byte TAG_LONG = 'J';
+    private final static byte TAG_SHORT = 'S';
+    private final static byte TAG_BYTE = 'B';
+    private final static byte TAG_DOUBLE = 'D';
+    private final static byte TAG_FLOAT = 'F';
+    private final static byte TAG_BOOLEAN = 'Z';
+    private final static byte TAG_STRING = 'T';
+    private final static byte TAG_DECIMAL = 'M';
+    private final static byte TAG_TIMESTAMP = 'P';
+    private final static byte TAG_SQL_DATE = 'd';
+    private final static byte TAG_DATE = 'U';
+    private final static byte TAG_LOCAL_DATE = 'L';
+    private final static byte TAG_LOCAL_DATE_TIME = 'X';
+
+    /**
+     * Static class.
+     */
+    private PageToken() {
+        // no - op
+    }
+
+    /**
+     * Encodes the key values.
+     *
+     * @param key the values of the ordering columns of the last row.
+     * @return the token.
+     */
+    public static String encode(Object[] key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(key.length);
+            for (Object value : key) {
+                writeValue(out, value);
+            }
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new PolarisRuntimeException("Cannot encode page token", e);
+        }
+    }
+
+    /**
+     * Decodes a token created by encode.
+     *
+     * @param token
+     * @return the key values.
+     */
+    public static Object[] decode(String token) {
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(token);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new PolarisRuntimeException("Unsupported page token version -> " + version);
+            }
+            Object[] key = new Object[in.readUnsignedByte()];
+            for (int index = 0; index < key.length; index++) {
+                key[index] = readValue(in);
+            }
+            return key;
+        } catch (IOException | IllegalArgumentException | DateTimeException e) {
+            throw new PolarisRuntimeException("Invalid page token", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TAG_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(TAG_SQL_DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof java.util.Date) {
+            out.writeByte(TAG_DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(TAG_LOCAL_DATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(TAG_LOCAL_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else {
+            String type = value == null ? "null" : value.getClass().getName();
+            throw new PolarisRuntimeException("Key value type is not supported in a page token -> " + type);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_STRING:
+                return in.readUTF();
+            case TAG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case TAG_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TAG_SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case TAG_DATE:
+                return new java.util.Date(in.readLong());
+            case TAG_LOCAL_DATE:
+                return LocalDate.parse(in.readUTF());
+            case TAG_LOCAL_DATE_TIME:
+                return LocalDateTime.parse(in.readUTF());
+            default:
+                throw new PolarisRuntimeException("Unknown value tag in page token -> " + tag);
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Minimal byte source used by the row codec so that the same decoder can read
+ * from a stream or from a (memory mapped) byte buffer.
+ *
+ * @author Jhon Melvin
+ */
+public interface ByteInput {
+
+    /**
+     * Reads one byte.
+     *
+     * @return the byte as 0 to 255.
+     * @throws IOException end of input.
+     */
+    int read() throws IOException;
+
+    /**
+     * Reads exactly the length of the array.
+     *
+     * @param bytes
+     * @throws IOException end of input.
+     */
+    default void readFully(byte[] bytes) throws IOException {
+        this.readFully(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads exactly length bytes into the array.
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @throws IOException end of input.
+     */
+    void readFully(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Number of bytes left when known.
+     *
+     * @return remaining bytes, -1 if unknown.
+     */
+    default long remaining() {
+        return -1;
+    }
+
+    /**
+     * Reads from a byte buffer starting at its current position.
+     *
+     * @param buffer
+     * @return
+     */
+    static ByteInput of(ByteBuffer buffer) {
+        return new ByteInput() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    return buffer.get() & 0xFF;
+                } catch (BufferUnderflowException e) {
+                    throw new EOFException();
+                }
+            }
+
+            @Override
+            public void readFully(byte[] bytes, int offset, int length) throws IOException {
+                try {
+                    buffer.get(bytes, offset, length);
+                } catch (BufferUnderflowException e) {
+                    throw new EOFException();
+                }
+            }
+
+            @Override
+            public long remaining() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * Reads from an input stream. wrap the stream with a buffered stream since
+     * values are read one byte at a time.
+     *
+     * @param stream
+     * @return
+     */
+    static ByteInput of(InputStream stream) {
+        return new ByteInput() {
+            @Override
+            public int read() throws IOException {
+                int value = stream.read();
+                if (value < 0) {
+                    throw new EOFException();
+                }
+                return value;
+            }
+
+            @Override
+            public void readFully(byte[] bytes, int offset, int length) throws IOException {
+                int end = offset + length;
+                while (offset < end) {
+                    int count = stream.read(bytes, offset, end - offset);
+                    if (count < 0) {
+                        throw new EOFException();
+                    }
+                    offset += count;
+                }
+            }
+        };
+    }
+
+}
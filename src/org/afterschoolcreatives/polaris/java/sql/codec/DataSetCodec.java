@@ -0,0 +1,349 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.afterschoolcreatives.polaris.java.exceptions.CodecException;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.DataRow;
+import org.afterschoolcreatives.polaris.java.sql.DataSet;
+
+/**
+ * Versioned binary format for data sets, used instead of the default Java
+ * serialization of the ArrayList and HashMap.
+ *
+ * <pre>
+ * magic "PDS" | version | column count | column labels
+ * (ROW marker | tagged values of RowCodec)* | END marker
+ * </pre>
+ *
+ * The labels are written once in the header. the encoder and the decoder are
+ * streaming so a data set can be copied without holding all the bytes.
+ *
+ * Decoding from a stream reads exactly up to the end marker and does not
+ * close the stream, the bytes after the data set are left in the stream. the
+ * stream is not buffered by the decoder, pass a buffered stream when reading
+ * from a file or a socket.
+ *
+ * @author Jhon Melvin
+ */
+public final class DataSetCodec {
+
+    private final static byte[] MAGIC = {'P', 'D', 'S'};
+    /**
+     * Current format version.
+     */
+    public final static int VERSION = 1;
+    private final static int MARKER_END = 0;
+    private final static int MARKER_ROW = 1;
+
+    /**
+     * Static class.
+     */
+    private DataSetCodec() {
+        // no - op
+    }
+
+    //--------------------------------------------------------------------------
+    // Whole Data Set.
+    //--------------------------------------------------------------------------
+    /**
+     * Encodes the data set to the stream. the stream is flushed but not
+     * closed.
+     *
+     * @param dataSet
+     * @param out
+     * @throws IOException
+     */
+    public static void encode(DataSet dataSet, OutputStream out) throws IOException {
+        String[] columns = dataSet.isEmpty()
+                ? new String[0]
+                : dataSet.get(0).keySet().toArray(new String[0]);
+        Encoder encoder = new Encoder(out, columns);
+        for (DataRow row : dataSet) {
+            encoder.write(row);
+        }
+        encoder.finish();
+    }
+
+    /**
+     * Encodes the data set to a new byte buffer ready for reading.
+     *
+     * @param dataSet
+     * @return
+     * @throws IOException
+     */
+    public static ByteBuffer encode(DataSet dataSet) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataSetCodec.encode(dataSet, bytes);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Encodes the data set into the remaining space of the buffer.
+     *
+     * @param dataSet
+     * @param buffer
+     * @throws IOException
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void encode(DataSet dataSet, ByteBuffer buffer) throws IOException {
+        DataSetCodec.encode(dataSet, new ByteBufferOutputStream(buffer));
+    }
+
+    /**
+     * Writes directly to a byte buffer.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            this.buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.buffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Decodes a whole data set from the stream. the stream is read up to the
+     * end marker and is not closed.
+     *
+     * @param in a buffered stream.
+     * @return
+     * @throws IOException
+     */
+    public static DataSet decode(InputStream in) throws IOException {
+        return DataSetCodec.readAll(new Decoder(ByteInput.of(in)));
+    }
+
+    /**
+     * Decodes a whole data set from the buffer starting at its position.
+     *
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    public static DataSet decode(ByteBuffer buffer) throws IOException {
+        return DataSetCodec.readAll(new Decoder(ByteInput.of(buffer)));
+    }
+
+    private static DataSet readAll(Decoder decoder) throws IOException {
+        DataSet dataSet = new DataSet();
+        DataRow row;
+        while ((row = decoder.read()) != null) {
+            dataSet.add(row);
+        }
+        return dataSet;
+    }
+
+    //--------------------------------------------------------------------------
+    // Streaming.
+    //--------------------------------------------------------------------------
+    /**
+     * Streaming encoder, writes the header on creation and one row per call.
+     */
+    public static class Encoder {
+
+        private final OutputStream out;
+        private final String[] columns;
+        private boolean finished;
+
+        /**
+         * Constructor. writes the header.
+         *
+         * @param out the stream is buffered by the encoder.
+         * @param columns the column labels of the rows.
+         * @throws IOException
+         */
+        public Encoder(OutputStream out, String[] columns) throws IOException {
+            this.out = (out instanceof BufferedOutputStream
+                    || out instanceof ByteArrayOutputStream
+                    || out instanceof ByteBufferOutputStream)
+                    ? out : new BufferedOutputStream(out, 8192);
+            this.columns = columns.clone();
+            this.finished = false;
+            this.out.write(MAGIC);
+            this.out.write(VERSION);
+            RowCodec.writeVarLong(this.out, this.columns.length);
+            for (String column : this.columns) {
+                RowCodec.writeBytes(this.out, column.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Writes a row, the row must have the same columns as the header.
+         *
+         * @param row
+         * @throws IOException
+         */
+        public void write(DataRow row) throws IOException {
+            if (this.finished) {
+                throw new IOException("Encoder is already finished.");
+            }
+            if (row.size() != this.columns.length) {
+                throw new CodecException("Row has " + row.size() + " columns but the header has " + this.columns.length);
+            }
+            this.out.write(MARKER_ROW);
+            RowCodec.writeRow(this.out, row, this.columns);
+        }
+
+        /**
+         * Writes the end marker and flushes, the stream is not closed.
+         *
+         * @throws IOException
+         */
+        public void finish() throws IOException {
+            if (!this.finished) {
+                this.out.write(MARKER_END);
+                this.out.flush();
+                this.finished = true;
+            }
+        }
+    }
+
+    /**
+     * Streaming decoder, reads the header on creation and one row per call.
+     */
+    public static class Decoder implements Iterable<DataRow> {
+
+        private final ByteInput in;
+        private final String[] columns;
+        private boolean ended;
+
+        /**
+         * Reads from a stream up to the end marker, the stream is not closed.
+         *
+         * @param in a buffered stream.
+         * @throws IOException
+         */
+        public Decoder(InputStream in) throws IOException {
+            this(ByteInput.of(in));
+        }
+
+        /**
+         * Reads from a byte buffer starting at its position.
+         *
+         * @param buffer
+         * @throws IOException
+         */
+        public Decoder(ByteBuffer buffer) throws IOException {
+            this(ByteInput.of(buffer));
+        }
+
+        private Decoder(ByteInput in) throws IOException {
+            this.in = in;
+            for (byte expected : MAGIC) {
+                if (in.read() != expected) {
+                    throw new CodecException("Not an encoded data set.");
+                }
+            }
+            int version = in.read();
+            if (version != VERSION) {
+                throw new CodecException("Unsupported data set version -> " + version);
+            }
+            long count = RowCodec.readVarLong(in);
+            if (count > Short.MAX_VALUE) {
+                throw new CodecException("Invalid column count -> " + count);
+            }
+            this.columns = new String[(int) count];
+            for (int index = 0; index < this.columns.length; index++) {
+                this.columns[index] = new String(RowCodec.readBytes(in), StandardCharsets.UTF_8);
+            }
+            this.ended = false;
+        }
+
+        public String[] getColumns() {
+            return columns.clone();
+        }
+
+        /**
+         * Reads the next row.
+         *
+         * @return null at the end of the data set.
+         * @throws IOException
+         */
+        public DataRow read() throws IOException {
+            if (this.ended) {
+                return null;
+            }
+            int marker = this.in.read();
+            if (marker == MARKER_END) {
+                this.ended = true;
+                return null;
+            } else if (marker != MARKER_ROW) {
+                throw new CodecException("Unknown row marker -> " + marker);
+            }
+            return RowCodec.readRow(this.in, this.columns);
+        }
+
+        @Override
+        public Iterator<DataRow> iterator() {
+            return new Iterator<DataRow>() {
+                private DataRow next = null;
+
+                @Override
+                public boolean hasNext() {
+                    if (this.next == null) {
+                        try {
+                            this.next = Decoder.this.read();
+                        } catch (IOException e) {
+                            throw new PolarisRuntimeException("Cannot read the encoded data set.", e);
+                        }
+                    }
+                    return this.next != null;
+                }
+
+                @Override
+                public DataRow next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    DataRow row = this.next;
+                    this.next = null;
+                    return row;
+                }
+            };
+        }
+    }
+
+}
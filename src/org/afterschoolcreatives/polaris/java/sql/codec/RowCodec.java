@@ -0,0 +1,439 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import org.afterschoolcreatives.polaris.java.exceptions.CodecException;
+import org.afterschoolcreatives.polaris.java.sql.DataRow;
+
+/**
+ * Compact binary format for row values. each value is written as a one byte
+ * type tag followed by its payload, integers are written as zig-zag varints
+ * and text as length prefixed UTF-8.
+ *
+ * A row is the values of the columns in the order of the given column labels,
+ * the labels themselves are not written.
+ *
+ * Only the types listed by the tags are supported, other values are rejected
+ * with a CodecException. the codec never uses Java serialization so decoding
+ * an untrusted input does not create arbitrary objects.
+ *
+ * @author Jhon Melvin
+ */
+public final class RowCodec {
+
+    //--------------------------------------------------------------------------
+    // Type Tags. do not change the values, they are persisted.
+    //--------------------------------------------------------------------------
+    private final static int TAG_NULL = 0;
+    private final static int TAG_TRUE = 1;
+    private final static int TAG_FALSE = 2;
+    private final static int TAG_INTEGER = 3;
+    private final static int TAG_LONG = 4;
+    private final static int TAG_SHORT = 5;
+    private final static int TAG_BYTE = 6;
+    private final static int TAG_FLOAT = 7;
+    private final static int TAG_DOUBLE = 8;
+    private final static int TAG_STRING = 9;
+    private final static int TAG_BIG_DECIMAL = 10;
+    private final static int TAG_BIG_INTEGER = 11;
+    private final static int TAG_BYTES = 12;
+    private final static int TAG_SQL_DATE = 13;
+    private final static int TAG_SQL_TIME = 14;
+    private final static int TAG_TIMESTAMP = 15;
+    private final static int TAG_UTIL_DATE = 16;
+    private final static int TAG_LOCAL_DATE = 17;
+    private final static int TAG_LOCAL_DATE_TIME = 18;
+    private final static int TAG_LOCAL_TIME = 19;
+    private final static int TAG_CHARACTER = 20;
+    //--------------------------------------------------------------------------
+    /**
+     * Default limit of a single length prefixed value.
+     */
+    public final static int DEFAULT_MAX_VALUE_LENGTH = 256 * 1024 * 1024;
+    /**
+     * Values larger than this are read in chunks so a corrupted length does
+     * not allocate more than the bytes actually present.
+     */
+    private final static int READ_CHUNK = 1024 * 1024;
+    private static volatile int maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+
+    /**
+     * Static class.
+     */
+    private RowCodec() {
+        // no - op
+    }
+
+    /**
+     * Sets the largest string, number or byte array value in bytes that is
+     * written or read. longer length prefixes are rejected with a
+     * CodecException.
+     *
+     * @param length
+     */
+    public static void setMaxValueLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Max value length must not be negative.");
+        }
+        RowCodec.maxValueLength = length;
+    }
+
+    public static int getMaxValueLength() {
+        return RowCodec.maxValueLength;
+    }
+
+    //--------------------------------------------------------------------------
+    // Rows.
+    //--------------------------------------------------------------------------
+    /**
+     * Writes the values of the row in the order of the columns.
+     *
+     * @param out
+     * @param row
+     * @param columns
+     * @throws IOException
+     */
+    public static void writeRow(OutputStream out, DataRow row, String[] columns) throws IOException {
+        for (String column : columns) {
+            RowCodec.writeValue(out, row.get(column));
+        }
+    }
+
+    /**
+     * Reads a row written by writeRow.
+     *
+     * @param in
+     * @param columns
+     * @return
+     * @throws IOException
+     */
+    public static DataRow readRow(ByteInput in, String[] columns) throws IOException {
+        DataRow row = new DataRow(columns.length);
+        for (String column : columns) {
+            row.put(column, RowCodec.readValue(in));
+        }
+        return row;
+    }
+
+    //--------------------------------------------------------------------------
+    // Values.
+    //--------------------------------------------------------------------------
+    /**
+     * Checks whether the value can be written by writeValue.
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isSupported(Object value) {
+        return value == null
+                || value instanceof Boolean
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof Float
+                || value instanceof Double
+                || value instanceof String
+                || value instanceof BigDecimal
+                || value instanceof BigInteger
+                || value instanceof byte[]
+                || value instanceof java.util.Date
+                || value instanceof LocalDate
+                || value instanceof LocalDateTime
+                || value instanceof LocalTime
+                || value instanceof Character;
+    }
+
+    /**
+     * Writes a tagged value.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeValue(OutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer) {
+            out.write(TAG_INTEGER);
+            RowCodec.writeSignedVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.write(TAG_LONG);
+            RowCodec.writeSignedVarLong(out, (Long) value);
+        } else if (value instanceof Short) {
+            out.write(TAG_SHORT);
+            RowCodec.writeSignedVarLong(out, (Short) value);
+        } else if (value instanceof Byte) {
+            out.write(TAG_BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Float) {
+            out.write(TAG_FLOAT);
+            RowCodec.writeFixed(out, Float.floatToIntBits((Float) value), 4);
+        } else if (value instanceof Double) {
+            out.write(TAG_DOUBLE);
+            RowCodec.writeFixed(out, Double.doubleToLongBits((Double) value), 8);
+        } else if (value instanceof String) {
+            out.write(TAG_STRING);
+            RowCodec.writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.write(TAG_BIG_DECIMAL);
+            RowCodec.writeSignedVarLong(out, decimal.scale());
+            RowCodec.writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (value instanceof BigInteger) {
+            out.write(TAG_BIG_INTEGER);
+            RowCodec.writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof byte[]) {
+            out.write(TAG_BYTES);
+            RowCodec.writeBytes(out, (byte[]) value);
+        } else if (value instanceof java.sql.Date) {
+            out.write(TAG_SQL_DATE);
+            RowCodec.writeSignedVarLong(out, ((java.sql.Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.write(TAG_SQL_TIME);
+            RowCodec.writeSignedVarLong(out, ((Time) value).getTime());
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            out.write(TAG_TIMESTAMP);
+            RowCodec.writeSignedVarLong(out, timestamp.getTime());
+            RowCodec.writeSignedVarLong(out, timestamp.getNanos());
+        } else if (value instanceof java.util.Date) {
+            out.write(TAG_UTIL_DATE);
+            RowCodec.writeSignedVarLong(out, ((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.write(TAG_LOCAL_DATE);
+            RowCodec.writeSignedVarLong(out, ((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            out.write(TAG_LOCAL_DATE_TIME);
+            RowCodec.writeSignedVarLong(out, dateTime.toEpochSecond(ZoneOffset.UTC));
+            RowCodec.writeSignedVarLong(out, dateTime.getNano());
+        } else if (value instanceof LocalTime) {
+            out.write(TAG_LOCAL_TIME);
+            RowCodec.writeSignedVarLong(out, ((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof Character) {
+            out.write(TAG_CHARACTER);
+            RowCodec.writeSignedVarLong(out, (Character) value);
+        } else {
+            throw new CodecException("Value type is not supported by the row codec -> " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a tagged value.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static Object readValue(ByteInput in) throws IOException {
+        int tag = in.read();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_INTEGER:
+                return (int) RowCodec.readSignedVarLong(in);
+            case TAG_LONG:
+                return RowCodec.readSignedVarLong(in);
+            case TAG_SHORT:
+                return (short) RowCodec.readSignedVarLong(in);
+            case TAG_BYTE:
+                return (byte) in.read();
+            case TAG_FLOAT:
+                return Float.intBitsToFloat((int) RowCodec.readFixed(in, 4));
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(RowCodec.readFixed(in, 8));
+            case TAG_STRING:
+                return new String(RowCodec.readBytes(in), StandardCharsets.UTF_8);
+            case TAG_BIG_DECIMAL:
+                int scale = (int) RowCodec.readSignedVarLong(in);
+                return new BigDecimal(new BigInteger(RowCodec.readBytes(in)), scale);
+            case TAG_BIG_INTEGER:
+                return new BigInteger(RowCodec.readBytes(in));
+            case TAG_BYTES:
+                return RowCodec.readBytes(in);
+            case TAG_SQL_DATE:
+                return new java.sql.Date(RowCodec.readSignedVarLong(in));
+            case TAG_SQL_TIME:
+                return new Time(RowCodec.readSignedVarLong(in));
+            case TAG_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(RowCodec.readSignedVarLong(in));
+                timestamp.setNanos((int) RowCodec.readSignedVarLong(in));
+                return timestamp;
+            case TAG_UTIL_DATE:
+                return new java.util.Date(RowCodec.readSignedVarLong(in));
+            case TAG_LOCAL_DATE:
+                return LocalDate.ofEpochDay(RowCodec.readSignedVarLong(in));
+            case TAG_LOCAL_DATE_TIME:
+                long seconds = RowCodec.readSignedVarLong(in);
+                return LocalDateTime.ofEpochSecond(seconds, (int) RowCodec.readSignedVarLong(in), ZoneOffset.UTC);
+            case TAG_LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(RowCodec.readSignedVarLong(in));
+            case TAG_CHARACTER:
+                return (char) RowCodec.readSignedVarLong(in);
+            default:
+                throw new CodecException("Unknown value tag -> " + tag);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Primitives.
+    //--------------------------------------------------------------------------
+    /**
+     * Writes an unsigned varint, 7 bits per byte.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static long readVarLong(ByteInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int current = in.read();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CodecException("Malformed varint");
+    }
+
+    /**
+     * Zig-zag varint so small negative values are also short.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeSignedVarLong(OutputStream out, long value) throws IOException {
+        RowCodec.writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(ByteInput in) throws IOException {
+        long raw = RowCodec.readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Length prefixed bytes.
+     *
+     * @param out
+     * @param bytes
+     * @throws IOException
+     */
+    public static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+        if (bytes.length > RowCodec.maxValueLength) {
+            throw new CodecException("Value is larger than the max value length -> " + bytes.length);
+        }
+        RowCodec.writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads length prefixed bytes. the length is checked against the max
+     * value length and the remaining input before allocating.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static byte[] readBytes(ByteInput in) throws IOException {
+        long length = RowCodec.readVarLong(in);
+        if (length < 0 || length > RowCodec.maxValueLength) {
+            throw new CodecException("Value is larger than the max value length -> " + length);
+        }
+        long remaining = in.remaining();
+        if (remaining >= 0 && length > remaining) {
+            throw new CodecException("Value length " + length + " is past the end of the input.");
+        }
+        if (remaining >= 0 || length <= READ_CHUNK) {
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        //----------------------------------------------------------------------
+        // unknown input size, grow while the bytes are actually read.
+        byte[] bytes = new byte[READ_CHUNK];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) bytes.length * 2));
+            }
+            int count = Math.min(READ_CHUNK, bytes.length - read);
+            in.readFully(bytes, read, count);
+            read += count;
+        }
+        return bytes;
+    }
+
+    private static void writeFixed(OutputStream out, long value, int size) throws IOException {
+        for (int index = size - 1; index >= 0; index--) {
+            out.write((int) (value >>> (index * 8)));
+        }
+    }
+
+    private static long readFixed(ByteInput in, int size) throws IOException {
+        long value = 0;
+        for (int index = 0; index < size; index++) {
+            value = (value << 8) | in.read();
+        }
+        return value;
+    }
+
+}
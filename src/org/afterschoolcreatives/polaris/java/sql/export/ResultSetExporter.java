@@ -0,0 +1,544 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+import org.afterschoolcreatives.polaris.java.util.Compressor;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Writes a query result as CSV or JSON straight from the result set without
+ * creating a data set. values are copied to a reusable character buffer and
+ * integer columns are written digit by digit without creating strings.
+ *
+ * <pre>
+ * ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.CSV);
+ * exporter.setCompressed(true);
+ * try (OutputStream out = new FileOutputStream("scholars.csv.xz")) {
+ *     exporter.export(con, out, "SELECT * FROM scholar_information");
+ * }
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public class ResultSetExporter {
+
+    /**
+     * Output Format.
+     */
+    public enum Format {
+        /**
+         * RFC 4180 comma separated values.
+         */
+        CSV,
+        /**
+         * A JSON array of objects.
+         */
+        JSON,
+        /**
+         * One JSON object per line.
+         */
+        JSON_LINES
+    }
+
+    /**
+     * How a column is read and written.
+     */
+    private enum ColumnKind {
+        INTEGER, DECIMAL, FLOATING, BOOLEAN, BINARY, TEXT
+    }
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Format format;
+    private boolean header;
+    private char delimiter;
+    private boolean compressed;
+    private int compressionPreset;
+    private int bufferSize;
+
+    /**
+     * Constructor.
+     *
+     * @param format
+     */
+    public ResultSetExporter(Format format) {
+        this.format = format;
+        this.header = true;
+        this.delimiter = ',';
+        this.compressed = false;
+        this.compressionPreset = 6;
+        this.bufferSize = 16 * 1024;
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Write the column labels as the first CSV line. ignored for JSON.
+     *
+     * @param header
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * CSV field delimiter.
+     *
+     * @param delimiter
+     */
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Compress byte outputs with XZ.
+     *
+     * @param compressed
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * XZ preset from 0 (fast) to 9 (small).
+     *
+     * @param compressionPreset
+     */
+    public void setCompressionPreset(int compressionPreset) {
+        this.compressionPreset = compressionPreset;
+    }
+
+    /**
+     * Size of the character buffer.
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(256, bufferSize);
+    }
+
+    //--------------------------------------------------------------------------
+    // Export Methods.
+    //--------------------------------------------------------------------------
+    /**
+     * Executes the query and writes the result as UTF-8 to the stream. the
+     * stream is not closed.
+     *
+     * @param con
+     * @param out
+     * @param query
+     * @param parameters
+     * @return the number of exported rows.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long export(ConnectionManager con, OutputStream out, String query, Object... parameters) throws SQLException, IOException {
+        XZOutputStream xz = this.compressed ? Compressor.createXZOutputStream(out, this.compressionPreset) : null;
+        Writer writer = new OutputStreamWriter(xz == null ? out : xz, StandardCharsets.UTF_8);
+        long rows = this.export(con, writer, query, parameters);
+        if (xz != null) {
+            xz.finish();
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Executes the query and writes the result as UTF-8 to the channel. the
+     * channel is not closed.
+     *
+     * @param con
+     * @param channel
+     * @param query
+     * @param parameters
+     * @return the number of exported rows.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long export(ConnectionManager con, WritableByteChannel channel, String query, Object... parameters) throws SQLException, IOException {
+        return this.export(con, Channels.newOutputStream(channel), query, parameters);
+    }
+
+    /**
+     * Executes the query and writes the result to the writer. the writer is
+     * flushed but not closed.
+     *
+     * @param con
+     * @param writer
+     * @param query
+     * @param parameters
+     * @return the number of exported rows.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long export(ConnectionManager con, Writer writer, String query, Object... parameters) throws SQLException, IOException {
+        try {
+            return con.fetchResultSet(query, resultSet -> {
+                try {
+                    return this.export(resultSet, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, parameters);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the remaining rows of the result set to the writer. the writer is
+     * flushed but not closed.
+     *
+     * @param resultSet
+     * @param writer
+     * @return the number of exported rows.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long export(ResultSet resultSet, Writer writer) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        ColumnKind[] kinds = new ColumnKind[columnCount];
+        for (int index = 1; index <= columnCount; index++) {
+            labels[index - 1] = metaData.getColumnLabel(index);
+            kinds[index - 1] = ResultSetExporter.kindOf(metaData.getColumnType(index));
+        }
+        //----------------------------------------------------------------------
+        Output output = new Output(writer, this.bufferSize);
+        long rows = 0;
+        if (this.format == Format.CSV) {
+            if (this.header) {
+                for (int index = 0; index < columnCount; index++) {
+                    if (index > 0) {
+                        output.append(this.delimiter);
+                    }
+                    this.appendCsvText(output, labels[index]);
+                }
+                output.append("\r\n");
+            }
+            while (resultSet.next()) {
+                for (int index = 0; index < columnCount; index++) {
+                    if (index > 0) {
+                        output.append(this.delimiter);
+                    }
+                    this.appendCsvValue(output, resultSet, index + 1, kinds[index]);
+                }
+                output.append("\r\n");
+                rows++;
+            }
+        } else {
+            boolean array = this.format == Format.JSON;
+            if (array) {
+                output.append('[');
+            }
+            while (resultSet.next()) {
+                if (array && rows > 0) {
+                    output.append(',');
+                }
+                output.append('{');
+                for (int index = 0; index < columnCount; index++) {
+                    if (index > 0) {
+                        output.append(',');
+                    }
+                    ResultSetExporter.appendJsonText(output, labels[index]);
+                    output.append(':');
+                    ResultSetExporter.appendJsonValue(output, resultSet, index + 1, kinds[index]);
+                }
+                output.append('}');
+                if (!array) {
+                    output.append('\n');
+                }
+                rows++;
+            }
+            if (array) {
+                output.append(']');
+            }
+        }
+        output.flush();
+        return rows;
+    }
+
+    //--------------------------------------------------------------------------
+    // Value Writers.
+    //--------------------------------------------------------------------------
+    private static ColumnKind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return ColumnKind.INTEGER;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return ColumnKind.DECIMAL;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ColumnKind.FLOATING;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return ColumnKind.BOOLEAN;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return ColumnKind.BINARY;
+            default:
+                return ColumnKind.TEXT;
+        }
+    }
+
+    private void appendCsvValue(Output output, ResultSet resultSet, int column, ColumnKind kind) throws SQLException, IOException {
+        switch (kind) {
+            case INTEGER:
+                long number = resultSet.getLong(column);
+                if (!resultSet.wasNull()) {
+                    output.appendLong(number);
+                }
+                return;
+            case BOOLEAN:
+                boolean bool = resultSet.getBoolean(column);
+                if (!resultSet.wasNull()) {
+                    output.append(bool ? "true" : "false");
+                }
+                return;
+            default:
+                String text = ResultSetExporter.readText(resultSet, column, kind);
+                if (text != null) {
+                    this.appendCsvText(output, text);
+                }
+        }
+    }
+
+    private void appendCsvText(Output output, String text) throws IOException {
+        boolean quote = false;
+        for (int index = 0; index < text.length() && !quote; index++) {
+            char c = text.charAt(index);
+            quote = c == this.delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            output.append(text);
+            return;
+        }
+        output.append('"');
+        for (int index = 0; index < text.length(); index++) {
+            char c = text.charAt(index);
+            if (c == '"') {
+                output.append('"');
+            }
+            output.append(c);
+        }
+        output.append('"');
+    }
+
+    private static void appendJsonValue(Output output, ResultSet resultSet, int column, ColumnKind kind) throws SQLException, IOException {
+        switch (kind) {
+            case INTEGER:
+                long number = resultSet.getLong(column);
+                if (resultSet.wasNull()) {
+                    output.append("null");
+                } else {
+                    output.appendLong(number);
+                }
+                return;
+            case BOOLEAN:
+                boolean bool = resultSet.getBoolean(column);
+                output.append(resultSet.wasNull() ? "null" : (bool ? "true" : "false"));
+                return;
+            case FLOATING:
+                double floating = resultSet.getDouble(column);
+                if (resultSet.wasNull() || Double.isNaN(floating) || Double.isInfinite(floating)) {
+                    output.append("null");
+                } else {
+                    output.append(Double.toString(floating));
+                }
+                return;
+            case DECIMAL:
+                BigDecimal decimal = resultSet.getBigDecimal(column);
+                output.append(decimal == null ? "null" : decimal.toPlainString());
+                return;
+            default:
+                String text = ResultSetExporter.readText(resultSet, column, kind);
+                if (text == null) {
+                    output.append("null");
+                } else {
+                    ResultSetExporter.appendJsonText(output, text);
+                }
+        }
+    }
+
+    private static void appendJsonText(Output output, String text) throws IOException {
+        output.append('"');
+        for (int index = 0; index < text.length(); index++) {
+            char c = text.charAt(index);
+            switch (c) {
+                case '"':
+                    output.append("\\\"");
+                    break;
+                case '\\':
+                    output.append("\\\\");
+                    break;
+                case '\n':
+                    output.append("\\n");
+                    break;
+                case '\r':
+                    output.append("\\r");
+                    break;
+                case '\t':
+                    output.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        output.append("\\u00");
+                        output.append(HEX[c >> 4]);
+                        output.append(HEX[c & 0xF]);
+                    } else {
+                        output.append(c);
+                    }
+            }
+        }
+        output.append('"');
+    }
+
+    /**
+     * Reads non integer columns as text.
+     *
+     * @return null for SQL NULL.
+     */
+    private static String readText(ResultSet resultSet, int column, ColumnKind kind) throws SQLException {
+        switch (kind) {
+            case DECIMAL:
+                BigDecimal decimal = resultSet.getBigDecimal(column);
+                return decimal == null ? null : decimal.toPlainString();
+            case FLOATING:
+                double floating = resultSet.getDouble(column);
+                return resultSet.wasNull() ? null : Double.toString(floating);
+            case BINARY:
+                byte[] bytes = resultSet.getBytes(column);
+                return bytes == null ? null : Base64.getEncoder().encodeToString(bytes);
+            default:
+                return resultSet.getString(column);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Output Buffer.
+    //--------------------------------------------------------------------------
+    /**
+     * Reusable character buffer in front of the writer.
+     */
+    private static class Output {
+
+        private final Writer writer;
+        private final char[] buffer;
+        private int position;
+
+        private Output(Writer writer, int size) {
+            this.writer = writer;
+            this.buffer = new char[size];
+            this.position = 0;
+        }
+
+        private void append(char c) throws IOException {
+            if (this.position == this.buffer.length) {
+                this.drain();
+            }
+            this.buffer[this.position++] = c;
+        }
+
+        private void append(String text) throws IOException {
+            int offset = 0;
+            int length = text.length();
+            while (offset < length) {
+                if (this.position == this.buffer.length) {
+                    this.drain();
+                }
+                int count = Math.min(length - offset, this.buffer.length - this.position);
+                text.getChars(offset, offset + count, this.buffer, this.position);
+                this.position += count;
+                offset += count;
+            }
+        }
+
+        /**
+         * Writes the decimal digits of the value directly to the buffer.
+         *
+         * @param value
+         * @throws IOException
+         */
+        private void appendLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                this.append(Long.toString(value));
+                return;
+            }
+            if (this.buffer.length - this.position < 20) {
+                this.drain();
+            }
+            if (value < 0) {
+                this.buffer[this.position++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10) {
+                digits++;
+            }
+            int end = this.position + digits;
+            for (int index = end - 1; index >= this.position; index--) {
+                this.buffer[index] = (char) ('0' + (value % 10));
+                value /= 10;
+            }
+            this.position = end;
+        }
+
+        private void drain() throws IOException {
+            this.writer.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+
+        private void flush() throws IOException {
+            this.drain();
+            this.writer.flush();
+        }
+    }
+
+}
@@ -33,11 +33,24 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.exceptions.ResultTooLargeException;
+import org.afterschoolcreatives.polaris.java.sql.BatchLoader;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
 import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
 import org.afterschoolcreatives.polaris.java.sql.DataRow;
 import org.afterschoolcreatives.polaris.java.sql.DataSet;
+import org.afterschoolcreatives.polaris.java.sql.Page;
+import org.afterschoolcreatives.polaris.java.sql.ParallelHydrator;
+import org.afterschoolcreatives.polaris.java.sql.PrefetchingPager;
+import org.afterschoolcreatives.polaris.java.sql.ResultLimit;
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinders;
+import org.afterschoolcreatives.polaris.java.sql.builder.KeysetQuery;
 import org.afterschoolcreatives.polaris.java.sql.builder.QueryBuilder;
 import org.afterschoolcreatives.polaris.java.sql.orm.annotations.Column;
 import org.afterschoolcreatives.polaris.java.sql.orm.annotations.FetchOnly;
@@ -78,6 +91,7 @@ public class PolarisRecord {
     //--------------------------------------------------------------------------
     private ArrayList<DatabaseFields> classFields;
     private String databaseTableName;
+    private boolean parallelHydration;
 
     //--------------------------------------------------------------------------
     /**
@@ -189,7 +203,7 @@ public class PolarisRecord {
             String fieldName = sqlEscapeCharacter + modelData.getColumnName() + sqlEscapeCharacter;
             String fieldValue = "?";
             // add parameters.
-            queryParameters.add(modelData.getFieldValue());
+            queryParameters.add(ParameterBinders.bound(modelData.getFieldType(), modelData.getFieldValue()));
             /**
              * Append to query.
              */
@@ -245,6 +259,130 @@ public class PolarisRecord {
         return true;
     }
 
+    /**
+     * Parameter limit of one statement, 999 is the lowest among the supported
+     * databases (older SQLITE).
+     */
+    private final static int MAX_INSERT_PARAMETERS = 999;
+
+    /**
+     * Inserts many records with multi row INSERT statements instead of one
+     * round trip per record. consecutive records of the same table that have
+     * the same non null fields are sent in one statement. generated keys are
+     * not written back to the records.
+     *
+     * @param con Connection Manager that will be used.
+     * @param records records to insert, in order.
+     * @return the number of inserted rows.
+     * @throws SQLException if there was an error in inserting the data.
+     */
+    public static int insertAll(ConnectionManager con, List<? extends PolarisRecord> records) throws SQLException {
+        int inserted = 0;
+        int cursor = 0;
+        while (cursor < records.size()) {
+            PolarisRecord first = records.get(cursor);
+            first.identityMethod();
+            List<DatabaseFields> columns = first.insertColumns();
+            if (columns.isEmpty()) {
+                // nothing to group, keep the single insert behavior.
+                first.insert(con);
+                inserted++;
+                cursor++;
+                continue;
+            }
+            //------------------------------------------------------------------
+            // collect the following records with the same columns.
+            int maxRows = Math.max(1, MAX_INSERT_PARAMETERS / columns.size());
+            List<Object> parameters = new ArrayList<>(columns.size() * Math.min(maxRows, records.size() - cursor));
+            PolarisRecord.addInsertParameters(parameters, columns);
+            int rows = 1;
+            cursor++;
+            while (cursor < records.size() && rows < maxRows) {
+                PolarisRecord next = records.get(cursor);
+                if (next.getClass() != first.getClass()) {
+                    break;
+                }
+                next.identityMethod();
+                List<DatabaseFields> nextColumns = next.insertColumns();
+                if (!PolarisRecord.sameColumns(columns, nextColumns)) {
+                    break;
+                }
+                PolarisRecord.addInsertParameters(parameters, nextColumns);
+                rows++;
+                cursor++;
+            }
+            //------------------------------------------------------------------
+            StringBuilder query = new StringBuilder(64 + rows * columns.size() * 3);
+            query.append(sqlInsert).append(' ').append(sqlInto).append(' ')
+                    .append(sqlEscapeCharacter).append(first.databaseTableName).append(sqlEscapeCharacter)
+                    .append(" (");
+            for (int index = 0; index < columns.size(); index++) {
+                query.append(index == 0 ? "" : ",")
+                        .append(sqlEscapeCharacter).append(columns.get(index).getColumnName()).append(sqlEscapeCharacter);
+            }
+            query.append(") ").append(sqlValues).append(' ');
+            for (int row = 0; row < rows; row++) {
+                query.append(row == 0 ? "(" : ",(");
+                for (int index = 0; index < columns.size(); index++) {
+                    query.append(index == 0 ? "?" : ",?");
+                }
+                query.append(')');
+            }
+            query.append(';');
+            logger.debug("{} rows -> {}", rows, first.databaseTableName);
+            inserted += con.update(query.toString(), parameters.toArray());
+        }
+        return inserted;
+    }
+
+    /**
+     * Fields included in an insert, not auto filled and not null.
+     *
+     * @return
+     */
+    private List<DatabaseFields> insertColumns() {
+        List<DatabaseFields> columns = new ArrayList<>(this.classFields.size());
+        for (DatabaseFields modelData : this.classFields) {
+            if (!modelData.isAutoFill() && !modelData.isNullValue()) {
+                columns.add(modelData);
+            }
+        }
+        return columns;
+    }
+
+    private static boolean sameColumns(List<DatabaseFields> columns, List<DatabaseFields> other) {
+        if (columns.size() != other.size()) {
+            return false;
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            if (!columns.get(index).getColumnName().equals(other.get(index).getColumnName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addInsertParameters(List<Object> parameters, List<DatabaseFields> columns) {
+        for (DatabaseFields modelData : columns) {
+            parameters.add(ParameterBinders.bound(modelData.getFieldType(), modelData.getFieldValue()));
+        }
+    }
+
+    /**
+     * Setters by class and field name, shared by all threads.
+     */
+    private final static Map<Class<?>, Map<String, Method>> WRITE_METHODS = new ConcurrentHashMap<>();
+
+    private static Method writeMethodOf(Class<?> type, String fieldName) throws IntrospectionException {
+        Map<String, Method> methods = WRITE_METHODS.computeIfAbsent(type, k -> new ConcurrentHashMap<>());
+        Method method = methods.get(fieldName);
+        if (method == null) {
+            method = new PropertyDescriptor(fieldName, type).getWriteMethod();
+            methods.put(fieldName, method);
+        }
+        return method;
+    }
+
     /**
      * Write values to this model field.
      *
@@ -253,7 +391,7 @@ public class PolarisRecord {
      */
     private void writeValue(Object object, String fieldName, Object value) {
         try {
-            new PropertyDescriptor(fieldName, object.getClass()).getWriteMethod().invoke(object, value);
+            PolarisRecord.writeMethodOf(object.getClass(), fieldName).invoke(object, value);
         } catch (IntrospectionException | IllegalAccessException | InvocationTargetException ex) {
             throw new PolarisRuntimeException("Cannot Map Values to this Model: Error Writing on field -> " + fieldName, ex);
         } catch (IllegalArgumentException parameterException) {
@@ -344,7 +482,7 @@ public class PolarisRecord {
             /**
              * Add Parameters.
              */
-            queryParameters.add(modelData.getFieldValue());
+            queryParameters.add(ParameterBinders.bound(modelData.getFieldType(), modelData.getFieldValue()));
 
             /**
              * append to query.
@@ -383,7 +521,7 @@ public class PolarisRecord {
         /**
          * Where Clause Value.
          */
-        queryParameters.add(primaryKeyData.getFieldValue());
+        queryParameters.add(ParameterBinders.bound(primaryKeyData.getFieldType(), primaryKeyData.getFieldValue()));
         final String generatedQuery = startQuery + updateBuilder.toString() + whereClause;
         final String executeQuery = StringTools.clearExtraSpaces(generatedQuery);
         logger.debug(executeQuery);
@@ -487,7 +625,7 @@ public class PolarisRecord {
         final String executeQuery = StringTools.clearExtraSpaces(generatedQuery);
         logger.debug(executeQuery);
 
-        int res = con.update(executeQuery, primaryKeyData.getFieldValue());
+        int res = con.update(executeQuery, ParameterBinders.bound(primaryKeyData.getFieldType(), primaryKeyData.getFieldValue()));
         /**
          * If Nothing was affected by the update.
          */
@@ -570,6 +708,98 @@ public class PolarisRecord {
         return true;
     }
 
+    /**
+     * Retrieves many records by primary key with one IN query per
+     * MAX_INSERT_PARAMETERS keys.
+     *
+     * @param <K>
+     * @param <T>
+     * @param con
+     * @param ids primary key values.
+     * @return the records by the given key, keys that are not found are left
+     * out.
+     * @throws SQLException
+     */
+    public <K, T> Map<K, T> findAllById(ConnectionManager con, Collection<K> ids) throws SQLException {
+        /**
+         * Reflection.
+         */
+        //----------------------------------------------------------------------
+        // Identification Method.
+        this.identityMethod();
+        //----------------------------------------------------------------------
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        DatabaseFields primaryKeyData = null;
+        for (DatabaseFields modelData : this.classFields) {
+            if (modelData.isPrimaryKey()) {
+                primaryKeyData = modelData;
+                break;
+            }
+        }
+        if (primaryKeyData == null) {
+            throw new PolarisRuntimeException("Cannot Retrieve Records: No Field is Annotated as Primary Key.");
+        }
+
+        /**
+         * Create the query with one placeholder per key, at most
+         * MAX_INSERT_PARAMETERS keys per query.
+         */
+        StringBuilder prefix = new StringBuilder(64);
+        prefix.append(sqlSelect).append(" * ").append(sqlFrom).append(' ')
+                .append(sqlEscapeCharacter).append(this.databaseTableName).append(sqlEscapeCharacter)
+                .append(' ').append(sqlWhere).append(' ')
+                .append(sqlEscapeCharacter).append(primaryKeyData.getColumnName()).append(sqlEscapeCharacter)
+                .append(" IN (");
+        // the database may return a different number type than the key.
+        Map<Object, K> keys = new HashMap<>(ids.size() * 2);
+        Map<K, T> records = new HashMap<>(ids.size() * 2);
+        List<K> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += MAX_INSERT_PARAMETERS) {
+            List<K> chunk = idList.subList(from, Math.min(idList.size(), from + MAX_INSERT_PARAMETERS));
+            StringBuilder query = new StringBuilder(prefix.length() + chunk.size() * 3);
+            query.append(prefix);
+            Object[] parameters = new Object[chunk.size()];
+            int index = 0;
+            for (K id : chunk) {
+                query.append(index == 0 ? "?" : ", ?");
+                parameters[index++] = ParameterBinders.bound(primaryKeyData.getFieldType(), id);
+                keys.put(PolarisWrapper.normalizeKey(id), id);
+            }
+            query.append(");");
+            logger.debug(query.toString());
+
+            DataSet ds = con.fetch(query.toString(), parameters);
+            List<T> list = this.mapDataSet(ds);
+            for (int row = 0; row < ds.size(); row++) {
+                K key = keys.get(PolarisWrapper.normalizeKey(ds.get(row).get(primaryKeyData.getColumnName())));
+                if (key != null) {
+                    records.put(key, list.get(row));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Creates a loader that collects find by primary key calls of many threads
+     * and retrieves them with one IN query per batch. each batch uses a new
+     * connection from the factory.
+     *
+     * @param <K>
+     * @param <T>
+     * @param factory
+     * @return the loader, close it when done.
+     */
+    public <K, T> BatchLoader<K, T> loader(ConnectionFactory factory) {
+        return new BatchLoader<>(keys -> {
+            try (ConnectionManager con = factory.createConnectionManager()) {
+                return this.findAllById(con, keys);
+            }
+        });
+    }
+
     public boolean findQuery(ConnectionManager con, QueryBuilder builder) throws SQLException {
         /**
          * Reflection.
@@ -601,9 +831,6 @@ public class PolarisRecord {
     }
 
     public <T> List<T> findMany(ConnectionManager con, QueryBuilder builder) throws SQLException {
-        // create list holder
-        List<T> list = new ArrayList<>();
-
         /**
          * Reflection.
          */
@@ -611,7 +838,6 @@ public class PolarisRecord {
         // Identification Method.
         this.identityMethod();
         //----------------------------------------------------------------------
-        ArrayList<DatabaseFields> fields = this.classFields;
 
         // get results
         DataSet ds = con.fetch(builder.getQueryString(), builder.getParameters());
@@ -619,38 +845,141 @@ public class PolarisRecord {
         // Check if Empty return false
         if (ds.isEmpty()) {
             logger.trace("Result is empty.");
-            return list; // return an empty list
+            return new ArrayList<>(); // return an empty list
         }
 
+        return this.mapDataSet(ds); // return the list
+    }
+
+    /**
+     * Retrieves many records with a result limit for this call only.
+     *
+     * @param <T>
+     * @param con
+     * @param builder
+     * @param limit maximum rows and estimated bytes of the fetched rows.
+     * @return
+     * @throws SQLException
+     * @throws ResultTooLargeException when the result passes the limit.
+     */
+    public <T> List<T> findMany(ConnectionManager con, QueryBuilder builder, ResultLimit limit) throws SQLException {
         /**
-         * Iterate all over the results
+         * Reflection.
          */
-        for (DataRow dataRow : ds) {
-            // Check if Empty skip this row
-            if (dataRow.isEmpty()) {
-                continue;
-            }
-            // create a row holder
-            T row = null;
-            try {
-                row = (T) this.getClass().newInstance();
-            } catch (InstantiationException | IllegalAccessException ex) {
-                throw new PolarisRuntimeException("Cannot Create Model Instance, is there a public and default constructor ?", ex);
-            }
+        //----------------------------------------------------------------------
+        // Identification Method.
+        this.identityMethod();
+        //----------------------------------------------------------------------
+        DataSet ds = con.fetch(limit, builder.getQueryString(), builder.getParameters());
+        if (ds.isEmpty()) {
+            logger.trace("Result is empty.");
+            return new ArrayList<>();
+        }
+        return this.mapDataSet(ds);
+    }
 
-            /**
-             * Map The Data.
-             */
-            for (DatabaseFields field : fields) {
-                Object value = dataRow.get(field.getColumnName());
-                this.writeValue(row, field.getFieldName(), value);
-            }
+    /**
+     * Retrieves a page using keyset pagination and then maps it to a Java
+     * Object.
+     *
+     * @param <T>
+     * @param con
+     * @param query keyset query, the ordering columns must be selected.
+     * @return the page with the continuation token of the next page.
+     * @throws SQLException
+     */
+    public <T> Page<T> findPage(ConnectionManager con, KeysetQuery query) throws SQLException {
+        /**
+         * Reflection.
+         */
+        //----------------------------------------------------------------------
+        // Identification Method.
+        this.identityMethod();
+        //----------------------------------------------------------------------
 
-            list.add(row);
+        // get results, the query returns one extra row when there is a next page.
+        DataSet ds = con.fetch(query);
+        boolean hasNext = ds.size() > query.getPageSize();
+        if (hasNext) {
+            ds.remove(ds.size() - 1);
+        }
 
+        Object[] lastKey = null;
+        if (!ds.isEmpty()) {
+            lastKey = query.readKey(ds.get(ds.size() - 1)::get);
         }
+        List<T> list = this.mapDataSet(ds);
+        return new Page<>(list, lastKey, hasNext);
+    }
+
+    /**
+     * Walks every page of a keyset query while the next pages are fetched in
+     * the background on a connection from the factory.
+     *
+     * @param <T>
+     * @param factory creates the background connection.
+     * @param query keyset query, owned by the pager afterwards.
+     * @return the pager, close it when done.
+     */
+    public <T> PrefetchingPager<T> findPages(ConnectionFactory factory, KeysetQuery query) {
+        return new PrefetchingPager<>(factory, query, this::findPage);
+    }
 
-        return list; // return the list
+    /**
+     * Maps the rows of a data set to new instances of this model. large
+     * results are mapped in parallel when parallel hydration is on.
+     *
+     * @param <T>
+     * @param ds
+     * @return
+     */
+    private <T> List<T> mapDataSet(DataSet ds) {
+        DataRow[] rows = ds.toArray(new DataRow[ds.size()]);
+        if (this.parallelHydration) {
+            return ParallelHydrator.hydrate(rows, this::hydrate);
+        }
+        return ParallelHydrator.hydrate(rows, this::hydrate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance of this model with the values of the row.
+     *
+     * @param <T>
+     * @param dataRow
+     * @return null if the row is empty.
+     */
+    private <T> T hydrate(DataRow dataRow) {
+        // Check if Empty skip this row
+        if (dataRow.isEmpty()) {
+            return null;
+        }
+        // create a row holder
+        T row = null;
+        try {
+            row = (T) this.getClass().newInstance();
+        } catch (InstantiationException | IllegalAccessException ex) {
+            throw new PolarisRuntimeException("Cannot Create Model Instance, is there a public and default constructor ?", ex);
+        }
+
+        /**
+         * Map The Data.
+         */
+        for (DatabaseFields field : this.classFields) {
+            Object value = dataRow.get(field.getColumnName());
+            this.writeValue(row, field.getFieldName(), value);
+        }
+        return row;
+    }
+
+    /**
+     * Map large results with many threads. the rows are still returned in
+     * order, results below ParallelHydrator.PARALLEL_THRESHOLD are mapped on
+     * the calling thread.
+     *
+     * @param parallelHydration
+     */
+    public void setParallelHydration(boolean parallelHydration) {
+        this.parallelHydration = parallelHydration;
     }
 
     //--------------------------------------------------------------------------
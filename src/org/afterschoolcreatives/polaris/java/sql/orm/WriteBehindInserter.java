@@ -0,0 +1,385 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.orm;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write behind inserts for append only tables like audit logs and events.
+ * records are queued and a dedicated connection inserts them with multi row
+ * statements when the batch is full or the flush interval of its first record
+ * has passed. callers only wait when the queue is full.
+ *
+ * <pre>
+ * try (WriteBehindInserter audit = new WriteBehindInserter(factory, 10000)) {
+ *     audit.submit(event); // returns before the row is written.
+ * }
+ * </pre>
+ *
+ * a record is not in the database when submit returns, do not use this for
+ * rows that are read back right away. generated keys are not written back.
+ * each flush is one transaction, a failed flush is rolled back and retried one
+ * record at a time, records that still fail are logged and counted as failed.
+ *
+ * @author Jhon Melvin
+ */
+public class WriteBehindInserter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindInserter.class);
+
+    /**
+     * Queued record.
+     */
+    private static class Entry {
+
+        private final PolarisRecord record;
+        private final long enqueued;
+
+        private Entry(PolarisRecord record) {
+            this.record = record;
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marker that stops the flush thread.
+     */
+    private final static Entry STOP = new Entry(null);
+
+    private final ConnectionManager connection;
+    private final BlockingQueue<Entry> queue;
+    private final Thread flushThread;
+    /**
+     * Callers hold the read lock while queueing, close takes the write lock so
+     * no record is queued after the flush thread has stopped.
+     */
+    private final ReadWriteLock closeLock;
+    private volatile boolean closed;
+    private volatile int batchSize;
+    private volatile long flushInterval;
+    //--------------------------------------------------------------------------
+    private final AtomicLong insertedCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong flushCount;
+    private final AtomicLong totalFlushTime;
+    private final AtomicLong maxFlushTime;
+    private final AtomicLong totalDelay;
+    private final AtomicLong maxDelay;
+
+    /**
+     * Opens the dedicated connection and starts the flush thread.
+     *
+     * @param factory
+     * @param capacity maximum number of queued records.
+     * @throws SQLException
+     */
+    public WriteBehindInserter(ConnectionFactory factory, int capacity) throws SQLException {
+        if (capacity < 1) {
+            throw new PolarisRuntimeException("Queue capacity must be at least 1.");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.closeLock = new ReentrantReadWriteLock();
+        this.batchSize = 500;
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(200);
+        this.insertedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.flushCount = new AtomicLong();
+        this.totalFlushTime = new AtomicLong();
+        this.maxFlushTime = new AtomicLong();
+        this.totalDelay = new AtomicLong();
+        this.maxDelay = new AtomicLong();
+        //----------------------------------------------------------------------
+        this.connection = factory.createConnectionManager();
+        this.flushThread = new Thread(this::flushLoop, "polaris-write-behind");
+        this.flushThread.setDaemon(true);
+        this.flushThread.start();
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Maximum number of records in one flush. default is 500.
+     *
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Longest time a record waits in the queue before a flush is started.
+     * default is 200 milliseconds.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void setFlushInterval(long duration, TimeUnit unit) {
+        this.flushInterval = Math.max(0, unit.toNanos(duration));
+    }
+
+    //--------------------------------------------------------------------------
+    // Submit.
+    //--------------------------------------------------------------------------
+    /**
+     * Queues a record, waits while the queue is full.
+     *
+     * @param record
+     * @throws InterruptedException
+     */
+    public void submit(PolarisRecord record) throws InterruptedException {
+        this.closeLock.readLock().lock();
+        try {
+            this.checkOpen(record);
+            this.queue.put(new Entry(record));
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a record, waits up to the timeout while the queue is full.
+     *
+     * @param record
+     * @param timeout
+     * @param unit
+     * @return false if the queue stayed full.
+     * @throws InterruptedException
+     */
+    public boolean offer(PolarisRecord record, long timeout, TimeUnit unit) throws InterruptedException {
+        this.closeLock.readLock().lock();
+        try {
+            this.checkOpen(record);
+            return this.queue.offer(new Entry(record), timeout, unit);
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    private void checkOpen(PolarisRecord record) {
+        if (record == null) {
+            throw new NullPointerException("Record must not be null");
+        }
+        if (this.closed) {
+            throw new PolarisRuntimeException("The write behind inserter is closed.");
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Flush Thread.
+    //--------------------------------------------------------------------------
+    private void flushLoop() {
+        List<Entry> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                Entry first = this.queue.take();
+                if (first != STOP) {
+                    batch.add(first);
+                    long deadline = first.enqueued + this.flushInterval;
+                    while (batch.size() < this.batchSize) {
+                        long wait = deadline - System.nanoTime();
+                        Entry next = wait > 0
+                                ? this.queue.poll(wait, TimeUnit.NANOSECONDS)
+                                : this.queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        if (next == STOP) {
+                            running = false;
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } else {
+                    running = false;
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!running) {
+                // drain what was queued before the stop.
+                this.queue.drainTo(batch);
+                batch.remove(STOP);
+            }
+            for (int start = 0; start < batch.size(); start += this.batchSize) {
+                this.flush(batch.subList(start, Math.min(batch.size(), start + this.batchSize)));
+            }
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<PolarisRecord> records = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            records.add(entry.record);
+        }
+        long start = System.nanoTime();
+        int failed = 0;
+        try {
+            // one commit per flush, a failure leaves nothing half written.
+            this.connection.transactionStart();
+            PolarisRecord.insertAll(this.connection, records);
+            this.connection.transactionCommit();
+        } catch (SQLException | RuntimeException e) {
+            this.connection.transactionRollBackQuietly();
+            logger.warn("Batch insert of {} records failed, retrying one by one.", records.size(), e);
+            for (PolarisRecord record : records) {
+                try {
+                    record.insert(this.connection);
+                } catch (SQLException | RuntimeException ex) {
+                    logger.error("Failed to insert {}.", record.getClass().getName(), ex);
+                    failed++;
+                }
+            }
+        }
+        long end = System.nanoTime();
+        //----------------------------------------------------------------------
+        long flushTime = end - start;
+        this.flushCount.incrementAndGet();
+        this.totalFlushTime.addAndGet(flushTime);
+        this.maxFlushTime.accumulateAndGet(flushTime, Math::max);
+        this.insertedCount.addAndGet(records.size() - failed);
+        this.failedCount.addAndGet(failed);
+        for (Entry entry : batch) {
+            long delay = end - entry.enqueued;
+            this.totalDelay.addAndGet(delay);
+            this.maxDelay.accumulateAndGet(delay, Math::max);
+        }
+    }
+
+    /**
+     * Stops accepting records, writes the queued records and closes the
+     * connection.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+        try {
+            // the queue may be full, wait for room like the callers do.
+            this.queue.put(STOP);
+            this.flushThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.flushThread.interrupt();
+        } finally {
+            this.connection.close();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Statistics.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @return the number of records waiting to be written.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     *
+     * @return the number of records written.
+     */
+    public long getInsertedCount() {
+        return this.insertedCount.get();
+    }
+
+    /**
+     *
+     * @return the number of records that could not be written.
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     *
+     * @return the number of flushes.
+     */
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    /**
+     *
+     * @return average time to write a batch in nanoseconds.
+     */
+    public long getAverageFlushTime() {
+        long flushes = this.flushCount.get();
+        return flushes == 0 ? 0 : this.totalFlushTime.get() / flushes;
+    }
+
+    /**
+     *
+     * @return the longest time to write a batch in nanoseconds.
+     */
+    public long getMaxFlushTime() {
+        return this.maxFlushTime.get();
+    }
+
+    /**
+     *
+     * @return average time from submit to written in nanoseconds.
+     */
+    public long getAverageDelay() {
+        long records = this.insertedCount.get() + this.failedCount.get();
+        return records == 0 ? 0 : this.totalDelay.get() / records;
+    }
+
+    /**
+     *
+     * @return the longest time from submit to written in nanoseconds.
+     */
+    public long getMaxDelay() {
+        return this.maxDelay.get();
+    }
+
+}
@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinders;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -181,18 +182,15 @@ public class ConnectionManager implements AutoCloseable {
     /**
      * PRIVATE STATIC METHOD.
      *
-     * inserts parameters to a prepared statement.
+     * inserts parameters to a prepared statement. each parameter is bound
+     * with the setter of its type instead of setObject.
      *
      * @param preparedStatement
      * @param parameters
      * @throws SQLException
      */
     private static void insertPreparedParameters(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
-        if (parameters != null) {
-            for (int index = 1; index <= parameters.length; index++) {
-                preparedStatement.setObject(index, parameters[index - 1]);
-            }
-        }
+        ParameterBinders.bindAll(preparedStatement, parameters);
     }
 
     /**
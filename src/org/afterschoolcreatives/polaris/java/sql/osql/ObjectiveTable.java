@@ -34,12 +34,20 @@ import java.beans.IntrospectionException;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.BatchLoader;
+import org.afterschoolcreatives.polaris.java.sql.Page;
+import org.afterschoolcreatives.polaris.java.sql.ParallelHydrator;
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinders;
+import org.afterschoolcreatives.polaris.java.sql.builder.KeysetQuery;
 import org.afterschoolcreatives.polaris.java.sql.osql.util.BeanPropertyAccessor;
 import org.afterschoolcreatives.polaris.java.sql.osql.util.TypeCaster;
+import org.afterschoolcreatives.polaris.java.util.PolarisWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +62,12 @@ public abstract class ObjectiveTable {
      */
     private final static Logger LOG = LoggerFactory.getLogger(ObjectiveTable.class);
 
+    /**
+     * Parameter limit of one statement, 999 is the lowest among the supported
+     * databases (older SQLITE).
+     */
+    private final static int MAX_PARAMETERS = 999;
+
     //--------------------------------------------------------------------------
     private final static Map<Class, TableInformation> CACHED_TABLE_INFORMATION = new HashMap<>();
 
@@ -107,6 +121,15 @@ public abstract class ObjectiveTable {
         this.tableInfo = tableInfo;
     }
 
+    /**
+     * Package protected getter for the table replica.
+     *
+     * @return
+     */
+    TableInformation getTableInfo() {
+        return this.tableInfo;
+    }
+
     /**
      * Default Constructor.
      */
@@ -228,7 +251,7 @@ public abstract class ObjectiveTable {
                 }
                 //--------------------------------------------------------------
                 constructFields.add(entityField.getColumnName());
-                insertParameters.add(value);
+                insertParameters.add(ParameterBinders.bound(entityField.getBinder(), entityField.getFieldType(), value));
             } catch (IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                 this.throwCommonExceptions(e);
             }
@@ -366,7 +389,7 @@ public abstract class ObjectiveTable {
                 }
                 //--------------------------------------------------------------
                 updatedFields.add(entityField.getColumnName());
-                updatedParameters.add(value);
+                updatedParameters.add(ParameterBinders.bound(entityField.getBinder(), entityField.getFieldType(), value));
             } catch (IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                 this.throwCommonExceptions(e);
             }
@@ -376,7 +399,7 @@ public abstract class ObjectiveTable {
         /**
          * Created Where Clause.
          */
-        updatedParameters.add(idValue);
+        updatedParameters.add(ParameterBinders.bound(this.tableInfo.getIdColumn().getBinder(), this.tableInfo.getIdColumn().getFieldType(), idValue));
         final String generatedQuery = this.constructUpdateQuery(tableName,
                 updatedFields.toArray(new String[updatedFields.size()]),
                 this.tableInfo.getIdColumn().getColumnName());
@@ -440,7 +463,7 @@ public abstract class ObjectiveTable {
 
         final String generatedQuery = this.constructDeleteQuery(tableName, idColumn);
         LOG.info("[{}] [Query] -> Constructed . . .", this.getClass().getName());
-        int affectedRecords = con.update(generatedQuery, value);
+        int affectedRecords = con.update(generatedQuery, ParameterBinders.bound(this.tableInfo.getIdColumn().getBinder(), this.tableInfo.getIdColumn().getFieldType(), value));
         LOG.info("[{}] [Affected Rows] -> {}", this.getClass().getName(), affectedRecords);
         return affectedRecords != 0;
     }
@@ -462,6 +485,22 @@ public abstract class ObjectiveTable {
      */
     private List<ObjectiveTable> dataSet;
 
+    /**
+     * Hydrate large results with many threads.
+     */
+    private boolean parallelHydration;
+
+    /**
+     * Hydrate the rows of large results with many threads. the order of the
+     * rows is kept, results below ParallelHydrator.PARALLEL_THRESHOLD are
+     * hydrated on the calling thread.
+     *
+     * @param parallelHydration
+     */
+    public void setParallelHydration(boolean parallelHydration) {
+        this.parallelHydration = parallelHydration;
+    }
+
     /**
      * Gets the result set.
      *
@@ -496,51 +535,176 @@ public abstract class ObjectiveTable {
         }
 
         /**
-         * Iterate all over the results
+         * Iterate all over the results, large results are hydrated in
+         * parallel when enabled, the order of the rows is kept.
          */
-        for (DataRow dataRow : ds.read()) {
-            // Check if Empty skip this row
-            if (dataRow.isEmpty()) {
-                continue;
-            }
-            // create a row holder
-            ObjectiveTable row = null;
-            try {
-                row = (ObjectiveTable) this.getClass().newInstance();
-            } catch (InstantiationException | IllegalAccessException ex) {
-                throw new RuntimeException("Cannot Create Model Instance, is there a public and default constructor ?", ex);
+        int threshold = this.parallelHydration ? ParallelHydrator.PARALLEL_THRESHOLD : Integer.MAX_VALUE;
+        this.dataSet.addAll(ParallelHydrator.hydrate(ds.read(),
+                dataRow -> dataRow.isEmpty() ? null : this.hydrate(dataRow), threshold));
+
+        return true;
+    }
+
+    /**
+     * Retrieves many rows by id with one IN query per 999 ids. the result is
+     * not added to getDataSet.
+     *
+     * @param <K>
+     * @param <T>
+     * @param con An open Connection Manager.
+     * @param type the class of this table or one of its super classes.
+     * @param ids id values.
+     * @return the rows by the given id, ids that are not found are left out.
+     * @throws SQLException Database Exception.
+     */
+    public <K, T extends ObjectiveTable> Map<K, T> findAllById(ConnectionManager con, Class<T> type, Collection<K> ids) throws SQLException {
+        if (!type.isInstance(this)) {
+            throw new PolarisRuntimeException(this.getClass().getName() + " is not a " + type.getName());
+        }
+        Map<K, T> rows = new HashMap<>(ids.size() * 2);
+        if (ids.isEmpty()) {
+            return rows;
+        }
+        final TableInformation.Column idColumn = this.tableInfo.getIdColumn();
+        final String prefix = "SELECT * FROM " + this.tableInfo.getTableName()
+                + " WHERE " + idColumn.getColumnName() + " IN (";
+        // the database may return a different number type than the id.
+        Map<Object, K> keys = new HashMap<>(ids.size() * 2);
+        LOG.info("[{}] [Query] -> Find {} ids . . .", this.getClass().getName(), ids.size());
+        // at most MAX_PARAMETERS ids per query.
+        List<K> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += MAX_PARAMETERS) {
+            List<K> chunk = idList.subList(from, Math.min(idList.size(), from + MAX_PARAMETERS));
+            final StringBuilder query = new StringBuilder(prefix.length() + chunk.size() * 3);
+            query.append(prefix);
+            Object[] parameters = new Object[chunk.size()];
+            int index = 0;
+            for (K id : chunk) {
+                query.append(index == 0 ? "?" : ", ?");
+                parameters[index++] = ParameterBinders.bound(idColumn.getBinder(), idColumn.getFieldType(), id);
+                keys.put(PolarisWrapper.normalizeKey(id), id);
             }
+            query.append(");");
 
-            /**
-             * Map The Data.
-             */
-            for (TableInformation.Column field : this.tableInfo.getTableColumns()) {
-                String fieldName = field.getFieldName();
-                Class fieldType = field.getFieldType();
-                Object value = dataRow.get(field.getColumnName());
-                try {
-                    //----------------------------------------------------------
-                    if (value != null) {
-                        // If the Class of the value and the field where it will be wrtten
-                        // does not match use Type Caster to cast it.
-                        if (!value.getClass().equals(fieldType)) {
-                            LOG.warn("[TYPE MISMATCH] Retrieved Value -> {} [{}] does not match {}->{} [{}]", value, value.getClass(), this.getClass().getName(), fieldName, fieldType);
-                            // if the Class Type is not supported for casting
-                            // this will throw an UnsupportedOperationException
-                            value = TypeCaster.autoCast(value, fieldType);
-                        }
-                    }
-                    //----------------------------------------------------------
-                    // writes the value to the field.
-                    BeanPropertyAccessor.writeMethod(row, fieldName, value);
-                } catch (IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                    this.throwCommonExceptions(e);
+            DataSet ds = con.fetch(query.toString(), parameters);
+            for (DataRow dataRow : ds.read()) {
+                if (dataRow.isEmpty()) {
+                    continue;
+                }
+                K key = keys.get(PolarisWrapper.normalizeKey(dataRow.get(idColumn.getColumnName())));
+                if (key != null) {
+                    rows.put(key, type.cast(this.hydrate(dataRow)));
                 }
             }
+        }
+        return rows;
+    }
+
+    /**
+     * Creates a loader that collects find by id calls of many threads and
+     * retrieves them with one IN query per batch. each batch uses a new
+     * connection from the factory.
+     *
+     * @param <K>
+     * @param <T>
+     * @param factory
+     * @param type the class of this table or one of its super classes.
+     * @return the loader, close it when done.
+     */
+    public <K, T extends ObjectiveTable> BatchLoader<K, T> loader(ConnectionFactory factory, Class<T> type) {
+        return new BatchLoader<>(keys -> {
+            try (ConnectionManager con = factory.createConnectionManager()) {
+                return this.findAllById(con, type, keys);
+            }
+        });
+    }
+
+    /**
+     * Execute a SELECT using keyset pagination. the result of the page is also
+     * available in getDataSet.
+     *
+     * The query takes the driver from sql.ConnectionFactory, use the same
+     * driver name as the connection factory of this connection manager.
+     *
+     * @param <T>
+     * @param con An open Connection Manager.
+     * @param type the class of this table or one of its super classes.
+     * @param query keyset query, the ordering columns must be selected.
+     * @return the page with the continuation token of the next page.
+     * @throws SQLException Database Exception.
+     */
+    public <T extends ObjectiveTable> Page<T> fetchPage(ConnectionManager con, Class<T> type, KeysetQuery query) throws SQLException {
+        if (!type.isInstance(this)) {
+            throw new PolarisRuntimeException(this.getClass().getName() + " is not a " + type.getName());
+        }
+        // create list holder
+        this.dataSet = new LinkedList<>();
+        LOG.info("[{}] [Keyset Query] -> Received . . .", this.getClass().getName());
+        DataSet ds = con.fetch(query.getQueryString(), query.getParameters());
+        DataRow[] rows = ds.read();
+        //----------------------------------------------------------------------
+        // the query returns one extra row when there is a next page.
+        boolean hasNext = rows.length > query.getPageSize();
+        int size = hasNext ? query.getPageSize() : rows.length;
+        //----------------------------------------------------------------------
+        List<T> items = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            if (rows[index].isEmpty()) {
+                continue;
+            }
+            ObjectiveTable row = this.hydrate(rows[index]);
             this.dataSet.add(row);
+            items.add(type.cast(row));
         }
+        Object[] lastKey = null;
+        if (size > 0) {
+            lastKey = query.readKey(rows[size - 1]::get);
+        }
+        return new Page<>(items, lastKey, hasNext);
+    }
 
-        return true;
+    /**
+     * Creates a new instance of this table and writes the row values to it.
+     *
+     * @param dataRow
+     * @return
+     */
+    ObjectiveTable hydrate(DataRow dataRow) {
+        // create a row holder
+        ObjectiveTable row = null;
+        try {
+            row = (ObjectiveTable) this.getClass().newInstance();
+        } catch (InstantiationException | IllegalAccessException ex) {
+            throw new RuntimeException("Cannot Create Model Instance, is there a public and default constructor ?", ex);
+        }
+
+        /**
+         * Map The Data.
+         */
+        for (TableInformation.Column field : this.tableInfo.getTableColumns()) {
+            String fieldName = field.getFieldName();
+            Class fieldType = field.getFieldType();
+            Object value = dataRow.get(field.getColumnName());
+            try {
+                //--------------------------------------------------------------
+                if (value != null) {
+                    // If the Class of the value and the field where it will be wrtten
+                    // does not match use Type Caster to cast it.
+                    if (!value.getClass().equals(fieldType)) {
+                        LOG.warn("[TYPE MISMATCH] Retrieved Value -> {} [{}] does not match {}->{} [{}]", value, value.getClass(), this.getClass().getName(), fieldName, fieldType);
+                        // if the Class Type is not supported for casting
+                        // this will throw an UnsupportedOperationException
+                        value = TypeCaster.autoCast(value, fieldType);
+                    }
+                }
+                //--------------------------------------------------------------
+                // writes the value to the field.
+                BeanPropertyAccessor.writeMethod(row, fieldName, value);
+            } catch (IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+                this.throwCommonExceptions(e);
+            }
+        }
+        return row;
     }
 
 }
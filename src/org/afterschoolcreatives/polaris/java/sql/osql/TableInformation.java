@@ -36,6 +36,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinder;
+import org.afterschoolcreatives.polaris.java.sql.binder.ParameterBinders;
 import org.afterschoolcreatives.polaris.java.sql.osql.annotations.Id;
 import org.afterschoolcreatives.polaris.java.sql.osql.annotations.Table;
 import org.afterschoolcreatives.polaris.java.sql.osql.util.AnnotationReader;
@@ -127,6 +129,10 @@ class TableInformation {
          * If the length was exceeded should be truncated ? or throw an error.
          */
         private boolean truncated;
+        /**
+         * Parameter binder resolved from the field type.
+         */
+        private ParameterBinder binder;
 
         /**
          * Default constructor to initialize values.
@@ -139,6 +145,7 @@ class TableInformation {
             this.nullRestricted = false;
             this.length = 0;
             this.truncated = false;
+            this.binder = null;
         }
 
         //----------------------------------------------------------------------
@@ -172,6 +179,10 @@ class TableInformation {
             return truncated;
         }
 
+        public ParameterBinder getBinder() {
+            return binder;
+        }
+
         //----------------------------------------------------------------------
         // Setters.
         //----------------------------------------------------------------------
@@ -203,6 +214,10 @@ class TableInformation {
             this.truncated = truncated;
         }
 
+        public void setBinder(ParameterBinder binder) {
+            this.binder = binder;
+        }
+
     } // -> end of column class.
 
     //--------------------------------------------------------------------------
@@ -259,6 +274,7 @@ class TableInformation {
             Column col = new Column();
             col.setFieldName(annotatedField.getName());
             col.setFieldType(annotatedField.getType());
+            col.setBinder(ParameterBinders.forType(annotatedField.getType()));
             //
             for (Annotation annotation : annotatedField.getAnnotations()) {
                 if (annotation instanceof org.afterschoolcreatives.polaris.java.sql.osql.annotations.Column) {
@@ -0,0 +1,381 @@
+/**
+ *
+ * Objective SQL - Afterschool Creatives "Captivating Creativity"
+ *
+ *
+ * Copyright 2018 Jhon Melvin Nieto Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * Contact Us:
+ * Facebook: www.facebook.com/afterschoolcreatives
+ * Google Mail: afterschoolcreatives@gmail.com
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.osql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.util.PolarisWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory copy of a small lookup table (statuses, categories, settings).
+ * the whole table is loaded once and refreshed on a schedule, lookups read an
+ * immutable snapshot without locks and a refresh swaps in a new snapshot when
+ * it is complete. integer ids are stored in a primitive open addressing
+ * table.
+ *
+ * <pre>
+ * TableReplica&lt;Status&gt; statuses = new TableReplica&lt;&gt;(factory, Status.class);
+ * statuses.setWatermarkColumn("updated_at"); // optional.
+ * statuses.start(1, TimeUnit.MINUTES);
+ * Status status = statuses.get(statusId);
+ * </pre>
+ *
+ * with a watermark column only the rows changed since the last refresh are
+ * read, deleted rows are only removed by the periodic full reload. the
+ * returned entities are shared by all callers and must not be modified.
+ *
+ * @author Jhon Melvin
+ * @param <T>
+ */
+public class TableReplica<T extends ObjectiveTable> implements AutoCloseable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(TableReplica.class);
+
+    /**
+     * Immutable content of the table at one refresh.
+     *
+     * @param <T>
+     */
+    private final static class Snapshot<T> {
+
+        private final Map<Object, T> entries; // normalized id -> row.
+        private final List<T> rows;
+        private final Object watermark;
+        private final long loadedAt;
+        //----------------------------------------------------------------------
+        // primitive mode, null when an id is not an integer.
+        private final long[] keys;
+        private final int[] slots; // index in rows plus one, 0 is empty.
+        private final int mask;
+
+        private Snapshot(Map<Object, T> entries, Object watermark, long loadedAt) {
+            this.entries = entries;
+            this.rows = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+            this.watermark = watermark;
+            this.loadedAt = loadedAt;
+            boolean integral = true;
+            for (Object id : entries.keySet()) {
+                if (!(id instanceof Long)) {
+                    integral = false;
+                    break;
+                }
+            }
+            if (!integral) {
+                this.keys = null;
+                this.slots = null;
+                this.mask = 0;
+                return;
+            }
+            int capacity = Integer.highestOneBit(Math.max(2, entries.size()) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            int index = 0;
+            for (Object id : entries.keySet()) { // same order as rows.
+                long key = (Long) id;
+                int slot = TableReplica.mix(key) & this.mask;
+                while (this.slots[slot] != 0) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = key;
+                this.slots[slot] = ++index;
+            }
+        }
+
+        private T get(long id) {
+            if (this.keys == null) {
+                return this.entries.get(id);
+            }
+            int slot = TableReplica.mix(id) & this.mask;
+            int index;
+            while ((index = this.slots[slot]) != 0) {
+                if (this.keys[slot] == id) {
+                    return this.rows.get(index - 1);
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return null;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final Class<T> tableClass;
+    private final ObjectiveTable table;
+    private final TableInformation tableInfo;
+    private volatile Snapshot<T> snapshot;
+    private String watermarkColumn;
+    private int fullRefreshEvery;
+    private int incrementalRuns;
+    private ScheduledExecutorService scheduler;
+    //--------------------------------------------------------------------------
+    private final AtomicLong refreshCount;
+    private final AtomicLong failedCount;
+
+    /**
+     * Constructor, nothing is loaded until refresh or start is called.
+     *
+     * @param factory
+     * @param tableClass
+     */
+    public TableReplica(ConnectionFactory factory, Class<T> tableClass) {
+        this.factory = factory;
+        this.tableClass = tableClass;
+        this.table = ObjectiveTable.getTable(tableClass);
+        this.tableInfo = this.table.getTableInfo();
+        if (this.tableInfo.getIdColumn() == null) {
+            throw new PolarisRuntimeException(tableClass.getName() + " has no id column.");
+        }
+        this.snapshot = new Snapshot<>(new LinkedHashMap<>(), null, 0);
+        this.fullRefreshEvery = 10;
+        this.refreshCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    /**
+     * Column that holds the last change time or version of a row. when set a
+     * refresh only reads the rows at or after the highest value seen.
+     *
+     * @param watermarkColumn null to always reload the whole table.
+     */
+    public synchronized void setWatermarkColumn(String watermarkColumn) {
+        this.watermarkColumn = watermarkColumn;
+    }
+
+    /**
+     * With a watermark column, reload the whole table every given number of
+     * refreshes to remove deleted rows. default is 10.
+     *
+     * @param refreshes 0 to never reload.
+     */
+    public synchronized void setFullRefreshEvery(int refreshes) {
+        this.fullRefreshEvery = Math.max(0, refreshes);
+    }
+
+    //--------------------------------------------------------------------------
+    // Refresh.
+    //--------------------------------------------------------------------------
+    /**
+     * Loads the changed rows or the whole table and swaps the snapshot.
+     *
+     * @throws SQLException the current snapshot is kept.
+     */
+    public synchronized void refresh() throws SQLException {
+        Snapshot<T> current = this.snapshot;
+        boolean incremental = this.watermarkColumn != null && current.watermark != null
+                && (this.fullRefreshEvery == 0 || this.incrementalRuns < this.fullRefreshEvery);
+        if (!incremental) {
+            this.reload();
+            return;
+        }
+        final String query = "SELECT * FROM " + this.tableInfo.getTableName()
+                + " WHERE " + this.watermarkColumn + " >= ?";
+        DataSet changes;
+        try (ConnectionManager con = this.factory.createConnectionManager()) {
+            changes = con.fetch(query, current.watermark);
+        } catch (SQLException | RuntimeException e) {
+            this.failedCount.incrementAndGet();
+            throw e;
+        }
+        this.incrementalRuns++;
+        this.refreshCount.incrementAndGet();
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Object, T> entries = new LinkedHashMap<>(current.entries);
+        Object watermark = this.readRows(changes, entries, current.watermark);
+        this.snapshot = new Snapshot<>(entries, watermark, System.currentTimeMillis());
+        LOG.debug("[{}] {} changed rows", this.tableInfo.getTableName(), changes.read().length);
+    }
+
+    /**
+     * Loads the whole table and swaps the snapshot.
+     *
+     * @throws SQLException the current snapshot is kept.
+     */
+    public synchronized void reload() throws SQLException {
+        final String query = "SELECT * FROM " + this.tableInfo.getTableName();
+        DataSet rows;
+        try (ConnectionManager con = this.factory.createConnectionManager()) {
+            rows = con.fetch(query);
+        } catch (SQLException | RuntimeException e) {
+            this.failedCount.incrementAndGet();
+            throw e;
+        }
+        Map<Object, T> entries = new LinkedHashMap<>();
+        Object watermark = this.readRows(rows, entries, null);
+        this.snapshot = new Snapshot<>(entries, watermark, System.currentTimeMillis());
+        this.incrementalRuns = 0;
+        this.refreshCount.incrementAndGet();
+        LOG.debug("[{}] {} rows loaded", this.tableInfo.getTableName(), entries.size());
+    }
+
+    /**
+     * Hydrates the rows into the entries.
+     *
+     * @return the highest watermark.
+     */
+    private Object readRows(DataSet rows, Map<Object, T> entries, Object watermark) {
+        final String idColumn = this.tableInfo.getIdColumn().getColumnName();
+        for (DataRow dataRow : rows.read()) {
+            if (dataRow.isEmpty()) {
+                continue;
+            }
+            entries.put(PolarisWrapper.normalizeKey(dataRow.get(idColumn)), this.tableClass.cast(this.table.hydrate(dataRow)));
+            if (this.watermarkColumn != null) {
+                Object value = dataRow.get(this.watermarkColumn);
+                if (value != null && (watermark == null || PolarisWrapper.compareValues(value, watermark) > 0)) {
+                    watermark = value;
+                }
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * Loads the table now and refreshes it in the background. failed
+     * refreshes are logged and the previous snapshot is kept.
+     *
+     * @param period time between the end of a refresh and the next.
+     * @param unit
+     * @throws SQLException the first load failed.
+     */
+    public synchronized void start(long period, TimeUnit unit) throws SQLException {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.reload();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polaris-table-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.refresh();
+            } catch (SQLException | RuntimeException e) {
+                LOG.warn("[{}] refresh failed, keeping the previous snapshot.", this.tableInfo.getTableName(), e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops the background refresh, the last snapshot can still be read.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Lookups, these do not lock.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @param id
+     * @return the row or null.
+     */
+    public T get(long id) {
+        return this.snapshot.get(id);
+    }
+
+    /**
+     *
+     * @param id
+     * @return the row or null.
+     */
+    public T get(Object id) {
+        if (id == null) {
+            return null;
+        }
+        Object key = PolarisWrapper.normalizeKey(id);
+        Snapshot<T> current = this.snapshot;
+        return key instanceof Long ? current.get((long) (Long) key) : current.entries.get(key);
+    }
+
+    public boolean contains(Object id) {
+        return this.get(id) != null;
+    }
+
+    /**
+     *
+     * @return all rows in the order they were loaded.
+     */
+    public List<T> values() {
+        return this.snapshot.rows;
+    }
+
+    public int size() {
+        return this.snapshot.rows.size();
+    }
+
+    //--------------------------------------------------------------------------
+    // Statistics.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @return time of the current snapshot in epoch milliseconds, 0 if not
+     * loaded.
+     */
+    public long getLoadedAt() {
+        return this.snapshot.loadedAt;
+    }
+
+    public long getRefreshCount() {
+        return this.refreshCount.get();
+    }
+
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+}
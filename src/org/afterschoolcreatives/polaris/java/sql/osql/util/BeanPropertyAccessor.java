@@ -34,6 +34,8 @@ import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -41,6 +43,35 @@ import java.lang.reflect.Method;
  */
 public class BeanPropertyAccessor {
 
+    /**
+     * Accessors by class and property name, shared by all threads.
+     */
+    private final static Map<Class<?>, Map<String, Method>> WRITE_METHODS = new ConcurrentHashMap<>();
+    private final static Map<Class<?>, Map<String, Method>> READ_METHODS = new ConcurrentHashMap<>();
+
+    /**
+     * Finds the accessor once per class and property.
+     *
+     * @param cache
+     * @param javaClass
+     * @param propertyName
+     * @param write
+     * @return
+     * @throws IntrospectionException
+     */
+    private static Method cachedMethod(Map<Class<?>, Map<String, Method>> cache, Class<?> javaClass, String propertyName, boolean write) throws IntrospectionException {
+        Map<String, Method> methods = cache.computeIfAbsent(javaClass, k -> new ConcurrentHashMap<>());
+        Method method = methods.get(propertyName);
+        if (method == null) {
+            PropertyDescriptor propDescriptor = getPropertyDescriptor(javaClass, propertyName);
+            method = write ? propDescriptor.getWriteMethod() : propDescriptor.getReadMethod();
+            if (method != null) {
+                methods.put(propertyName, method);
+            }
+        }
+        return method;
+    }
+
     public static PropertyDescriptor getPropertyDescriptor(Class javaClass, String propertyName) throws IntrospectionException {
         return new PropertyDescriptor(propertyName, javaClass);
     }
@@ -62,8 +93,7 @@ public class BeanPropertyAccessor {
     public static Object writeMethod(Object hostObject, String propertyName, Object propertyValue)
             throws IntrospectionException, IllegalAccessException,
             IllegalArgumentException, InvocationTargetException {
-        PropertyDescriptor propDescriptor = getPropertyDescriptor(hostObject.getClass(), propertyName);
-        Method writeMethod = propDescriptor.getWriteMethod();
+        Method writeMethod = cachedMethod(WRITE_METHODS, hostObject.getClass(), propertyName, true);
         //----------------------------------------------------------------------
         if (writeMethod == null) {
             throw new NullPointerException("Write method does not exist");
@@ -97,8 +127,7 @@ public class BeanPropertyAccessor {
      * @throws InvocationTargetException
      */
     public static Object readMethod(Object hostObject, String propertyName) throws IntrospectionException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-        PropertyDescriptor propDescriptor = getPropertyDescriptor(hostObject.getClass(), propertyName);
-        Method readMethod = propDescriptor.getReadMethod();
+        Method readMethod = cachedMethod(READ_METHODS, hostObject.getClass(), propertyName, false);
         //----------------------------------------------------------------------
 //        // Make the write method accessible.
 //        if (!readMethod.isAccessible()) {
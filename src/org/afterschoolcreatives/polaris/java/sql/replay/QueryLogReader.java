@@ -0,0 +1,119 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.replay;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.afterschoolcreatives.polaris.java.sql.QueryListener;
+import org.afterschoolcreatives.polaris.java.sql.codec.ByteInput;
+import org.afterschoolcreatives.polaris.java.sql.codec.RowCodec;
+
+/**
+ * Reads the statements of a log written by QueryRecorder one at a time.
+ *
+ * @author Jhon Melvin
+ */
+public class QueryLogReader implements AutoCloseable {
+
+    private final static QueryListener.Kind[] KINDS = QueryListener.Kind.values();
+
+    private final InputStream stream;
+    private final ByteInput in;
+    private final List<String> queries;
+
+    public QueryLogReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * Reads from a stream, closed with the reader.
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public QueryLogReader(InputStream stream) throws IOException {
+        this.stream = new BufferedInputStream(stream, 64 * 1024);
+        this.in = ByteInput.of(this.stream);
+        this.queries = new ArrayList<>();
+        byte[] magic = new byte[QueryRecorder.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, QueryRecorder.MAGIC)) {
+            throw new IOException("Not a query log.");
+        }
+        int version = this.in.read();
+        if (version != QueryRecorder.VERSION) {
+            throw new IOException("Unsupported query log version " + version);
+        }
+    }
+
+    /**
+     * Next statement.
+     *
+     * @return null at the end of the log.
+     * @throws IOException
+     */
+    public RecordedQuery read() throws IOException {
+        int kind = this.stream.read();
+        if (kind < 0) {
+            return null;
+        }
+        if (kind >= KINDS.length) {
+            throw new IOException("Corrupted query log, unknown statement kind " + kind);
+        }
+        try {
+            long offset = RowCodec.readVarLong(this.in);
+            long elapsed = RowCodec.readVarLong(this.in);
+            boolean success = this.in.read() == 1;
+            int id = (int) RowCodec.readVarLong(this.in);
+            if (id == this.queries.size()) {
+                this.queries.add(new String(RowCodec.readBytes(this.in), StandardCharsets.UTF_8));
+            } else if (id > this.queries.size()) {
+                throw new IOException("Corrupted query log, unknown query " + id);
+            }
+            Object[] parameters = new Object[(int) RowCodec.readVarLong(this.in)];
+            for (int index = 0; index < parameters.length; index++) {
+                parameters[index] = RowCodec.readValue(this.in);
+            }
+            return new RecordedQuery(KINDS[kind], offset, elapsed, success, this.queries.get(id), parameters);
+        } catch (EOFException e) {
+            return null; // the last statement was cut while recording.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.stream.close();
+    }
+
+}
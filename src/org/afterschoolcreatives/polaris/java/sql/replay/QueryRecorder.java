@@ -0,0 +1,228 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.sql.QueryListener;
+import org.afterschoolcreatives.polaris.java.sql.binder.BoundParameter;
+import org.afterschoolcreatives.polaris.java.sql.codec.RowCodec;
+
+/**
+ * Writes every executed statement to a compact binary log that
+ * WorkloadReplayer can run again. each SQL text is written once and referred
+ * to by number afterwards, numbers and times are variable length.
+ *
+ * <pre>
+ * try (QueryRecorder recorder = new QueryRecorder(new File("workload.pql"))) {
+ *     factory.setQueryListener(recorder);
+ *     // run the application.
+ * }
+ * </pre>
+ *
+ * By default parameter values are not kept, only their shape: the type and
+ * for text and binary values the length. this keeps personal data out of the
+ * log while the replayed statements still bind the same kinds of values.
+ *
+ * @author Jhon Melvin
+ */
+public class QueryRecorder implements QueryListener, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryRecorder.class.getName());
+
+    /**
+     * Log header.
+     */
+    final static byte[] MAGIC = {'P', 'Q', 'L'};
+    final static int VERSION = 1;
+    /**
+     * Longest placeholder of a text or binary parameter.
+     */
+    private final static int MAX_PLACEHOLDER = 4096;
+
+    private final OutputStream out;
+    private final long startNanos;
+    private final Map<String, Integer> queryIds;
+    private boolean recordValues;
+    private boolean closed;
+    private long recorded;
+
+    /**
+     * Creates or replaces the log file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public QueryRecorder(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * Writes the log to a stream, closed with the recorder.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public QueryRecorder(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.startNanos = System.nanoTime();
+        this.queryIds = new HashMap<>();
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    /**
+     * Keep the real parameter values instead of placeholders. values not
+     * supported by RowCodec are recorded as null.
+     *
+     * @param recordValues
+     */
+    public synchronized void setRecordValues(boolean recordValues) {
+        this.recordValues = recordValues;
+    }
+
+    /**
+     * Number of statements written.
+     *
+     * @return
+     */
+    public synchronized long getRecordedCount() {
+        return this.recorded;
+    }
+
+    @Override
+    public void executed(Kind kind, String query, Object[] parameters, long elapsedNanos, boolean success) {
+        long offsetMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - elapsedNanos - this.startNanos);
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.out.write(kind.ordinal());
+                RowCodec.writeVarLong(this.out, Math.max(0, offsetMicros));
+                RowCodec.writeVarLong(this.out, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+                this.out.write(success ? 1 : 0);
+                //--------------------------------------------------------------
+                Integer id = this.queryIds.get(query);
+                if (id == null) {
+                    // a new text is written with the next free number.
+                    id = this.queryIds.size();
+                    this.queryIds.put(query, id);
+                    RowCodec.writeVarLong(this.out, id);
+                    RowCodec.writeBytes(this.out, query.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    RowCodec.writeVarLong(this.out, id);
+                }
+                //--------------------------------------------------------------
+                int count = parameters == null ? 0 : parameters.length;
+                RowCodec.writeVarLong(this.out, count);
+                for (int index = 0; index < count; index++) {
+                    Object value = parameters[index];
+                    if (value instanceof BoundParameter) {
+                        value = ((BoundParameter) value).getValue();
+                    }
+                    if (!this.recordValues) {
+                        value = QueryRecorder.shapeOf(value);
+                    } else if (!RowCodec.isSupported(value)) {
+                        value = null; // not supported by the log format.
+                    }
+                    RowCodec.writeValue(this.out, value);
+                }
+                this.recorded++;
+            } catch (IOException e) {
+                this.closed = true;
+                LOGGER.log(Level.SEVERE, "Query recording stopped", e);
+            }
+        }
+    }
+
+    /**
+     * Placeholder with the same type and size as the value.
+     *
+     * @param value
+     * @return
+     */
+    static Object shapeOf(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return value;
+        } else if (value instanceof String) {
+            char[] text = new char[Math.min(MAX_PLACEHOLDER, ((String) value).length())];
+            Arrays.fill(text, 'x');
+            return new String(text);
+        } else if (value instanceof byte[]) {
+            return new byte[Math.min(MAX_PLACEHOLDER, ((byte[]) value).length)];
+        } else if (value instanceof Integer) {
+            return 0;
+        } else if (value instanceof Long) {
+            return 0L;
+        } else if (value instanceof Short) {
+            return (short) 0;
+        } else if (value instanceof Byte) {
+            return (byte) 0;
+        } else if (value instanceof Double) {
+            return 0.0;
+        } else if (value instanceof Float) {
+            return 0.0f;
+        } else if (value instanceof BigDecimal) {
+            return BigDecimal.ZERO;
+        } else if (value instanceof BigInteger) {
+            return BigInteger.ZERO;
+        } else if (value instanceof Character) {
+            return 'x';
+        } else if (value instanceof java.sql.Timestamp) {
+            return new java.sql.Timestamp(0);
+        } else if (value instanceof java.sql.Date) {
+            return new java.sql.Date(0);
+        } else if (value instanceof java.sql.Time) {
+            return new java.sql.Time(0);
+        } else if (value instanceof java.util.Date) {
+            return new java.util.Date(0);
+        }
+        return null; // other values are not kept.
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.out.close();
+    }
+
+}
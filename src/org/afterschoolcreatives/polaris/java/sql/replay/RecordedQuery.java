@@ -0,0 +1,99 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.replay;
+
+import java.util.Arrays;
+import org.afterschoolcreatives.polaris.java.sql.QueryListener;
+
+/**
+ * A statement read from a query log.
+ *
+ * @author Jhon Melvin
+ */
+public final class RecordedQuery {
+
+    private final QueryListener.Kind kind;
+    private final long offsetMicros;
+    private final long elapsedMicros;
+    private final boolean success;
+    private final String query;
+    private final Object[] parameters;
+
+    RecordedQuery(QueryListener.Kind kind, long offsetMicros, long elapsedMicros, boolean success, String query, Object[] parameters) {
+        this.kind = kind;
+        this.offsetMicros = offsetMicros;
+        this.elapsedMicros = elapsedMicros;
+        this.success = success;
+        this.query = query;
+        this.parameters = parameters;
+    }
+
+    public QueryListener.Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Start time from the beginning of the recording.
+     *
+     * @return
+     */
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    /**
+     * Recorded execution time.
+     *
+     * @return
+     */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * The parameter values, or placeholders of the same type and size when
+     * the recorder did not keep values.
+     *
+     * @return
+     */
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedQuery{" + kind + " +" + offsetMicros + "us " + elapsedMicros + "us " + query + " " + Arrays.toString(parameters) + "}";
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.replay;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of a replay.
+ *
+ * @author Jhon Melvin
+ */
+public class ReplayReport {
+
+    private long[] latencies;
+    private int count;
+    private long errors;
+    private long skipped;
+    private long elapsedNanos;
+
+    ReplayReport() {
+        this.latencies = new long[1024];
+    }
+
+    synchronized void add(long latencyNanos, boolean success) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = latencyNanos;
+        if (!success) {
+            this.errors++;
+        }
+    }
+
+    /**
+     * A statement that could not be executed, counted without a latency.
+     */
+    synchronized void error() {
+        this.errors++;
+    }
+
+    synchronized void skip() {
+        this.skipped++;
+    }
+
+    synchronized void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = Arrays.copyOf(this.latencies, this.count);
+        Arrays.sort(this.latencies);
+    }
+
+    /**
+     * Executed statements including the failed ones.
+     *
+     * @return
+     */
+    public synchronized long getExecutedCount() {
+        return this.count;
+    }
+
+    public synchronized long getErrorCount() {
+        return this.errors;
+    }
+
+    /**
+     * Statements not replayed because they failed when recorded.
+     *
+     * @return
+     */
+    public synchronized long getSkippedCount() {
+        return this.skipped;
+    }
+
+    public synchronized long getElapsed(TimeUnit unit) {
+        return unit.convert(this.elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Statements per second.
+     *
+     * @return
+     */
+    public synchronized double getThroughput() {
+        return this.elapsedNanos == 0 ? 0 : this.count * 1e9 / this.elapsedNanos;
+    }
+
+    /**
+     * Latency percentile, nearest rank. the latency of a statement is from its
+     * scheduled time to its completion.
+     *
+     * @param percentile from 0 to 100.
+     * @param unit
+     * @return
+     */
+    public synchronized long getLatency(double percentile, TimeUnit unit) {
+        if (this.count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * this.count);
+        int index = Math.max(0, Math.min(this.count - 1, rank - 1));
+        return unit.convert(this.latencies[index], TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT,
+                "%d statements (%d errors, %d skipped) in %d ms, %.1f/s, latency us p50=%d p90=%d p99=%d max=%d",
+                this.count, this.errors, this.skipped, this.getElapsed(TimeUnit.MILLISECONDS), this.getThroughput(),
+                this.getLatency(50, TimeUnit.MICROSECONDS), this.getLatency(90, TimeUnit.MICROSECONDS),
+                this.getLatency(99, TimeUnit.MICROSECONDS), this.getLatency(100, TimeUnit.MICROSECONDS));
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+
+/**
+ * Runs a recorded workload against a database and measures it. statements
+ * are started at their recorded time divided by the speed up factor on a pool
+ * of worker threads, each with its own connection.
+ *
+ * Latency is measured from the time a statement was scheduled, not from the
+ * time a worker picked it up, so the time spent waiting for a busy worker is
+ * part of the reported latency like it would be for a real client.
+ *
+ * <pre>
+ * java -cp polaris.jar:sqlite-jdbc.jar \
+ *      org.afterschoolcreatives.polaris.java.sql.replay.WorkloadReplayer \
+ *      workload.pql copy.db 8 4
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public class WorkloadReplayer {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkloadReplayer.class.getName());
+
+    private final ConnectionFactory target;
+    private int concurrency;
+    private double speedUp;
+    private boolean skipFailed;
+
+    /**
+     * Constructor.
+     *
+     * @param target database that receives the workload.
+     */
+    public WorkloadReplayer(ConnectionFactory target) {
+        this.target = target;
+        this.concurrency = 4;
+        this.speedUp = 1;
+        this.skipFailed = true;
+    }
+
+    /**
+     * Number of worker threads and connections, default is 4.
+     *
+     * @param concurrency
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Replay speed compared to the recording, 2 runs twice as fast. zero
+     * ignores the recorded times and runs as fast as possible.
+     *
+     * @param speedUp
+     */
+    public void setSpeedUp(double speedUp) {
+        this.speedUp = Math.max(0, speedUp);
+    }
+
+    /**
+     * Skip the statements that failed when recorded, default is true.
+     *
+     * @param skipFailed
+     */
+    public void setSkipFailed(boolean skipFailed) {
+        this.skipFailed = skipFailed;
+    }
+
+    /**
+     * Replays a log file.
+     *
+     * @param log
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public ReplayReport replay(File log) throws IOException, InterruptedException {
+        try (QueryLogReader reader = new QueryLogReader(log)) {
+            return this.replay(reader);
+        }
+    }
+
+    /**
+     * Replays the statements of a reader.
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public ReplayReport replay(QueryLogReader reader) throws IOException, InterruptedException {
+        ReplayReport report = new ReplayReport();
+        List<ConnectionManager> connections = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<ConnectionManager> connection = new ThreadLocal<>();
+        ExecutorService workers = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "polaris-replay-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // bounds the statements read ahead of the workers.
+        Semaphore inFlight = new Semaphore(this.concurrency * 16);
+        long start = System.nanoTime();
+        long firstOffset = -1;
+        try {
+            RecordedQuery statement;
+            while ((statement = reader.read()) != null) {
+                if (this.skipFailed && !statement.isSuccess()) {
+                    report.skip();
+                    continue;
+                }
+                if (firstOffset < 0) {
+                    firstOffset = statement.getOffsetMicros();
+                }
+                long due;
+                if (this.speedUp > 0) {
+                    long offset = TimeUnit.MICROSECONDS.toNanos(statement.getOffsetMicros() - firstOffset);
+                    due = start + (long) (offset / this.speedUp);
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                    }
+                } else {
+                    due = System.nanoTime(); // no schedule, due when read.
+                }
+                inFlight.acquire();
+                RecordedQuery task = statement;
+                long scheduled = due;
+                workers.execute(() -> {
+                    try {
+                        ConnectionManager con = connection.get();
+                        if (con == null) {
+                            con = this.target.createConnectionManager();
+                            connection.set(con);
+                            connections.add(con);
+                        }
+                        WorkloadReplayer.execute(con, task, scheduled, report);
+                    } catch (SQLException e) {
+                        LOGGER.log(Level.WARNING, "Cannot open a replay connection -> {0}", e.toString());
+                        report.error(); // not executed, no latency sample.
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            report.finish(System.nanoTime() - start);
+            return report;
+        } finally {
+            workers.shutdownNow();
+            connections.forEach(ConnectionManager::closeQuietly);
+        }
+    }
+
+    /**
+     * Executes a statement and records its latency from the scheduled time.
+     *
+     * @param con
+     * @param statement
+     * @param scheduled System.nanoTime when the statement was due.
+     * @param report
+     */
+    private static void execute(ConnectionManager con, RecordedQuery statement, long scheduled, ReplayReport report) {
+        boolean success = false;
+        try {
+            switch (statement.getKind()) {
+                case FETCH:
+                    con.fetchEach(statement.getQuery(), row -> {
+                        // rows are read and dropped.
+                    }, statement.getParameters());
+                    break;
+                case INSERT:
+                    con.insert(statement.getQuery(), statement.getParameters());
+                    break;
+                default:
+                    con.update(statement.getQuery(), statement.getParameters());
+            }
+            success = true;
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Replayed statement failed", e);
+        }
+        report.add(System.nanoTime() - scheduled, success);
+    }
+
+    /**
+     * Replays a log against an SQLITE database.
+     *
+     * @param args log file, SQLITE database, concurrency (4), speed up (1, 0
+     * for no delay).
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: WorkloadReplayer <log> <sqlite database> [concurrency] [speed up]");
+            return;
+        }
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setConnectionDriver(ConnectionFactory.Driver.SQLite);
+        factory.setSQLiteURL(args[1]);
+        factory.setSQLiteTuned(true);
+        WorkloadReplayer replayer = new WorkloadReplayer(factory);
+        if (args.length > 2) {
+            replayer.setConcurrency(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            replayer.setSpeedUp(Double.parseDouble(args[3]));
+        }
+        System.out.println(replayer.replay(new File(args[0])));
+    }
+
+}
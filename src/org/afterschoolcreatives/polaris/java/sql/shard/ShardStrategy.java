@@ -0,0 +1,130 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.shard;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.util.PolarisWrapper;
+
+/**
+ * Decides which shard holds a key.
+ *
+ * @author Jhon Melvin
+ */
+@FunctionalInterface
+public interface ShardStrategy {
+
+    /**
+     * Shard of a key.
+     *
+     * @param key shard key, never null.
+     * @param shardCount number of shards.
+     * @return index from 0 to shardCount - 1.
+     */
+    int shardOf(Object key, int shardCount);
+
+    /**
+     * Spreads keys evenly using the hash code of the key. the hash code must
+     * be stable across processes, String, Integer, Long and UUID are.
+     * integral keys are hashed as Long so the driver number type does not
+     * matter.
+     *
+     * @return
+     */
+    static ShardStrategy hash() {
+        return (key, shardCount) -> {
+            // murmur3 finalizer, spreads sequential keys.
+            int h = PolarisWrapper.normalizeKey(key).hashCode();
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return Math.floorMod(h, shardCount);
+        };
+    }
+
+    /**
+     * Contiguous key ranges. shard i holds the keys lower than upperBounds[i],
+     * the last shard holds the rest. the bounds must be sorted and there must
+     * be one less bound than shards. keys and bounds are compared with
+     * PolarisWrapper.compareValues, numbers of different classes match.
+     *
+     * @param upperBounds exclusive upper bounds.
+     * @return
+     */
+    static ShardStrategy range(Comparable<?>... upperBounds) {
+        Object[] bounds = new Object[upperBounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = PolarisWrapper.normalizeKey(upperBounds[i]);
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (PolarisWrapper.compareValues(bounds[i - 1], bounds[i]) >= 0) {
+                throw new PolarisRuntimeException("Range bounds must be sorted and unique.");
+            }
+        }
+        return (key, shardCount) -> {
+            if (bounds.length != shardCount - 1) {
+                throw new PolarisRuntimeException("Expected " + (shardCount - 1) + " range bounds for " + shardCount + " shards.");
+            }
+            int index = Arrays.binarySearch(bounds, PolarisWrapper.normalizeKey(key), PolarisWrapper::compareValues);
+            // exact match belongs to the next range.
+            return index >= 0 ? index + 1 : -index - 1;
+        };
+    }
+
+    /**
+     * Explicit key to shard assignments, for example tenants moved to a
+     * dedicated instance. keys not in the table use the fallback. integral
+     * keys match whatever their number type.
+     *
+     * @param assignments key to shard index.
+     * @param fallback strategy for unlisted keys, null to reject them.
+     * @return
+     */
+    static ShardStrategy lookup(Map<?, Integer> assignments, ShardStrategy fallback) {
+        Map<Object, Integer> table = new HashMap<>(assignments.size() * 2);
+        assignments.forEach((key, shard) -> {
+            Integer previous = table.put(PolarisWrapper.normalizeKey(key), shard);
+            if (previous != null && !previous.equals(shard)) {
+                throw new PolarisRuntimeException("The key " + key + " is assigned to more than one shard.");
+            }
+        });
+        return (key, shardCount) -> {
+            Integer shard = table.get(PolarisWrapper.normalizeKey(key));
+            if (shard != null) {
+                return shard;
+            }
+            if (fallback == null) {
+                throw new PolarisRuntimeException("No shard is assigned to the key " + key);
+            }
+            return fallback.shardOf(key, shardCount);
+        };
+    }
+
+}
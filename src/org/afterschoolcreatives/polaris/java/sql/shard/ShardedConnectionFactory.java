@@ -0,0 +1,257 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.shard;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionTask;
+import org.afterschoolcreatives.polaris.java.sql.DataSet;
+import org.afterschoolcreatives.polaris.java.sql.builder.QueryBuilder;
+
+/**
+ * Routes work to one of several databases holding the same schema. single key
+ * work goes to the shard chosen by the strategy, scatter gather queries run on
+ * every shard in parallel.
+ *
+ * <pre>
+ * ShardedConnectionFactory shards = new ShardedConnectionFactory(
+ *         Arrays.asList(tenantsA, tenantsB, tenantsC), ShardStrategy.hash());
+ * try (ConnectionManager con = shards.forKey(tenantId).createConnectionManager()) {
+ *     con.fetch("SELECT * FROM invoice WHERE tenant_id = ?", tenantId);
+ * }
+ * DataSet all = shards.fetchAll("SELECT * FROM invoice WHERE total > ?", 1000);
+ * </pre>
+ *
+ * @author Jhon Melvin
+ */
+public class ShardedConnectionFactory implements AutoCloseable {
+
+    private final List<ConnectionFactory> shards;
+    private final ShardStrategy strategy;
+    private ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param shards connection factory of each shard, the index is the shard
+     * number.
+     * @param strategy key to shard mapping.
+     */
+    public ShardedConnectionFactory(List<ConnectionFactory> shards, ShardStrategy strategy) {
+        if (shards.isEmpty()) {
+            throw new PolarisRuntimeException("At least one shard is required.");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.strategy = strategy;
+    }
+
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    public ConnectionFactory getShard(int index) {
+        return this.shards.get(index);
+    }
+
+    //--------------------------------------------------------------------------
+    // Single Shard.
+    //--------------------------------------------------------------------------
+    /**
+     * Shard index of a key.
+     *
+     * @param key
+     * @return
+     */
+    public int shardOf(Object key) {
+        if (key == null) {
+            throw new PolarisRuntimeException("Shard key cannot be null.");
+        }
+        int index = this.strategy.shardOf(key, this.shards.size());
+        if (index < 0 || index >= this.shards.size()) {
+            throw new PolarisRuntimeException("Shard " + index + " does not exist for the key " + key);
+        }
+        return index;
+    }
+
+    /**
+     * Connection factory of the shard that holds the key.
+     *
+     * @param key
+     * @return
+     */
+    public ConnectionFactory forKey(Object key) {
+        return this.shards.get(this.shardOf(key));
+    }
+
+    /**
+     * Runs the task on a new connection to the shard of the key.
+     *
+     * @param <T>
+     * @param key
+     * @param task
+     * @return
+     * @throws SQLException
+     */
+    public <T> T execute(Object key, ConnectionTask<T> task) throws SQLException {
+        try (ConnectionManager con = this.forKey(key).createConnectionManager()) {
+            return task.execute(con);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Scatter Gather.
+    //--------------------------------------------------------------------------
+    /**
+     * Runs the task on every shard in parallel, each with its own connection.
+     * if a shard fails the others are cancelled and the first failure is
+     * thrown with the rest attached as suppressed exceptions.
+     *
+     * @param <T>
+     * @param task
+     * @return results in shard order.
+     * @throws SQLException
+     */
+    public <T> List<T> executeAll(ConnectionTask<T> task) throws SQLException {
+        ExecutorService pool = this.executor();
+        List<Future<T>> futures = new ArrayList<>(this.shards.size());
+        for (ConnectionFactory shard : this.shards) {
+            futures.add(pool.submit(() -> {
+                try (ConnectionManager con = shard.createConnectionManager()) {
+                    return task.execute(con);
+                }
+            }));
+        }
+        //----------------------------------------------------------------------
+        List<T> results = new ArrayList<>(futures.size());
+        SQLException failure = null;
+        for (int index = 0; index < futures.size(); index++) {
+            try {
+                results.add(futures.get(index).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new SQLException("Interrupted while waiting for the shards.", e);
+            } catch (ExecutionException e) {
+                SQLException error = new SQLException("Shard " + index + " failed -> " + e.getCause(), e.getCause());
+                if (failure == null) {
+                    failure = error;
+                    futures.forEach(future -> future.cancel(true));
+                } else {
+                    failure.addSuppressed(error);
+                }
+            } catch (CancellationException e) {
+                // cancelled after an earlier failure.
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Executes the query on every shard in parallel and appends the results in
+     * shard order. ordering and limits are applied per shard only.
+     *
+     * @param query
+     * @param parameters
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetchAll(String query, Object... parameters) throws SQLException {
+        List<DataSet> results = this.executeAll(con -> con.fetch(query, parameters));
+        DataSet merged = new DataSet();
+        int size = 0;
+        for (DataSet result : results) {
+            size += result.size();
+        }
+        merged.ensureCapacity(size);
+        results.forEach(merged::addAll);
+        return merged;
+    }
+
+    /**
+     * Scatter gather fetch using a query builder.
+     *
+     * @see ShardedConnectionFactory#fetchAll(java.lang.String,
+     * java.lang.Object...)
+     * @param builder
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetchAll(QueryBuilder builder) throws SQLException {
+        return this.fetchAll(builder.getQueryString(), builder.getParameters());
+    }
+
+    /**
+     * Executes an update on every shard.
+     *
+     * @param query
+     * @param parameters
+     * @return total affected rows.
+     * @throws SQLException
+     */
+    public int updateAll(String query, Object... parameters) throws SQLException {
+        int total = 0;
+        for (Integer count : this.executeAll(con -> con.update(query, parameters))) {
+            total += count;
+        }
+        return total;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (this.executor == null) {
+            this.executor = Executors.newFixedThreadPool(this.shards.size(), runnable -> {
+                Thread thread = new Thread(runnable, "polaris-shard-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.executor;
+    }
+
+    /**
+     * Stops the scatter gather threads.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+}
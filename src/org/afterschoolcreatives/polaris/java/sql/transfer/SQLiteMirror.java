@@ -0,0 +1,606 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.transfer;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionTask;
+import org.afterschoolcreatives.polaris.java.sql.DataRow;
+import org.afterschoolcreatives.polaris.java.sql.DataSet;
+import org.afterschoolcreatives.polaris.java.sql.SQLiteDatabase;
+import org.afterschoolcreatives.polaris.java.util.PolarisWrapper;
+
+/**
+ * Keeps a local SQLITE copy of chosen remote tables for desktop clients. each
+ * sync pulls only the rows changed since the last watermark and writes them
+ * with INSERT OR REPLACE. reads of mirrored tables are routed to the local
+ * file so screens render from local data and keep working on a slow or lost
+ * link, other reads go to the remote database.
+ *
+ * <pre>
+ * SQLiteMirror mirror = new SQLiteMirror(remote, local);
+ * mirror.mirror(Student.class, "id", "updated_at");
+ * mirror.start(30, TimeUnit.SECONDS);
+ * List&lt;Student&gt; students = mirror.read(Student.class,
+ *         con -&gt; new Student().findMany(con, query));
+ * </pre>
+ *
+ * the watermarks are kept in the polaris_mirror table of the local file, a
+ * table synced by a previous run is read locally right away. rows deleted on
+ * the remote are not seen by the incremental sync, call reset to copy the
+ * table again. local tables are created from the remote column types.
+ *
+ * A full copy is loaded into a staging table and swapped in with one local
+ * transaction, reads keep using the previous local rows while it runs and a
+ * failed copy leaves them untouched. only a first copy reads the remote.
+ *
+ * @author Jhon Melvin
+ */
+public class SQLiteMirror implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SQLiteMirror.class.getName());
+
+    /**
+     * Parameter limit of one SQLITE statement.
+     */
+    private final static int MAX_PARAMETERS = 999;
+
+    /**
+     * A mirrored table and its sync state.
+     */
+    private static class MirroredTable {
+
+        private final String table;
+        private final String keyColumn;
+        private final String watermarkColumn;
+        private Object watermark;
+        private volatile boolean ready;
+        private volatile long syncedAt;
+        private boolean created;
+
+        private MirroredTable(String table, String keyColumn, String watermarkColumn) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.watermarkColumn = watermarkColumn;
+        }
+    }
+
+    private final ConnectionFactory remote;
+    private final SQLiteDatabase local;
+    private final Map<String, MirroredTable> tables;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Opens the local file and creates the watermark table.
+     *
+     * @param remote factory of the remote database.
+     * @param local SQLITE factory of the local file.
+     * @throws SQLException
+     */
+    public SQLiteMirror(ConnectionFactory remote, ConnectionFactory local) throws SQLException {
+        this.remote = remote;
+        this.local = new SQLiteDatabase(local);
+        this.tables = new ConcurrentHashMap<>();
+        try {
+            this.local.update("CREATE TABLE IF NOT EXISTS polaris_mirror ("
+                    + "table_name TEXT PRIMARY KEY, watermark, watermark_type TEXT, synced_at INTEGER)");
+        } catch (SQLException | RuntimeException e) {
+            this.local.close();
+            throw e;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Tables.
+    //--------------------------------------------------------------------------
+    /**
+     * Adds a table to the mirror.
+     *
+     * @param table remote and local table name.
+     * @param keyColumn primary key of the table.
+     * @param watermarkColumn column that grows on every change (update time
+     * or version), null to copy the whole table on every sync.
+     * @throws SQLException
+     */
+    public void mirror(String table, String keyColumn, String watermarkColumn) throws SQLException {
+        MirroredTable mirrored = new MirroredTable(table, keyColumn, watermarkColumn);
+        DataRow state = this.local.read(con -> con.fetchFirst(
+                "SELECT watermark, watermark_type, synced_at FROM polaris_mirror WHERE table_name = ?", table));
+        if (!state.isEmpty()) {
+            // synced by a previous run, the local rows can be used right away.
+            mirrored.watermark = SQLiteMirror.restoreWatermark(state.get("watermark"), (String) state.get("watermark_type"));
+            mirrored.syncedAt = ((Number) state.get("synced_at")).longValue();
+            mirrored.created = true;
+            mirrored.ready = true;
+        }
+        this.tables.put(table.toLowerCase(), mirrored);
+    }
+
+    /**
+     * Adds the table of an entity, annotated with the orm or osql Table
+     * annotation.
+     *
+     * @see SQLiteMirror#mirror(java.lang.String, java.lang.String,
+     * java.lang.String)
+     * @param entity
+     * @param keyColumn
+     * @param watermarkColumn
+     * @throws SQLException
+     */
+    public void mirror(Class<?> entity, String keyColumn, String watermarkColumn) throws SQLException {
+        this.mirror(SQLiteMirror.tableOf(entity), keyColumn, watermarkColumn);
+    }
+
+    private static String tableOf(Class<?> entity) {
+        org.afterschoolcreatives.polaris.java.sql.orm.annotations.Table table
+                = entity.getAnnotation(org.afterschoolcreatives.polaris.java.sql.orm.annotations.Table.class);
+        if (table != null) {
+            return table.value();
+        }
+        org.afterschoolcreatives.polaris.java.sql.osql.annotations.Table objectiveTable
+                = entity.getAnnotation(org.afterschoolcreatives.polaris.java.sql.osql.annotations.Table.class);
+        if (objectiveTable != null) {
+            return objectiveTable.value();
+        }
+        throw new PolarisRuntimeException(entity.getName() + " has no Table annotation.");
+    }
+
+    /**
+     * Checks if reads of the table are served from the local file, true once
+     * the table was synced.
+     *
+     * @param table
+     * @return
+     */
+    public boolean isMirrored(String table) {
+        MirroredTable mirrored = this.tables.get(table.toLowerCase());
+        return mirrored != null && mirrored.ready;
+    }
+
+    public boolean isMirrored(Class<?> entity) {
+        return this.isMirrored(SQLiteMirror.tableOf(entity));
+    }
+
+    /**
+     * Time of the last successful sync of the table.
+     *
+     * @param table
+     * @return epoch milliseconds, 0 if never synced.
+     */
+    public long getSyncedAt(String table) {
+        MirroredTable mirrored = this.tables.get(table.toLowerCase());
+        return mirrored == null ? 0 : mirrored.syncedAt;
+    }
+
+    //--------------------------------------------------------------------------
+    // Reads.
+    //--------------------------------------------------------------------------
+    /**
+     * Runs the task on the local file if the table of the entity is mirrored,
+     * otherwise on a new remote connection.
+     *
+     * @param <T>
+     * @param entity
+     * @param task
+     * @return
+     * @throws SQLException
+     */
+    public <T> T read(Class<?> entity, ConnectionTask<T> task) throws SQLException {
+        return this.read(SQLiteMirror.tableOf(entity), task);
+    }
+
+    /**
+     * Runs the task on the local file if the table is mirrored, otherwise on a
+     * new remote connection.
+     *
+     * @param <T>
+     * @param table
+     * @param task
+     * @return
+     * @throws SQLException
+     */
+    public <T> T read(String table, ConnectionTask<T> task) throws SQLException {
+        if (this.isMirrored(table)) {
+            return this.local.read(task);
+        }
+        try (ConnectionManager con = this.remote.createConnectionManager()) {
+            return task.execute(con);
+        }
+    }
+
+    /**
+     * Fetch routed by the table.
+     *
+     * @param table the table read by the query.
+     * @param query
+     * @param parameters
+     * @return
+     * @throws SQLException
+     */
+    public DataSet fetch(String table, String query, Object... parameters) throws SQLException {
+        return this.read(table, con -> con.fetch(query, parameters));
+    }
+
+    //--------------------------------------------------------------------------
+    // Sync.
+    //--------------------------------------------------------------------------
+    /**
+     * Pulls the changes of every mirrored table.
+     *
+     * @return the number of rows written.
+     * @throws SQLException the first failure, the other tables are still
+     * synced.
+     */
+    public synchronized long sync() throws SQLException {
+        long rows = 0;
+        SQLException failure = null;
+        for (MirroredTable mirrored : this.tables.values()) {
+            try {
+                rows += this.sync(mirrored);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Sync of {0} failed -> {1}", new Object[]{mirrored.table, e.toString()});
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return rows;
+    }
+
+    /**
+     * Pulls the changes of one table.
+     *
+     * @param table
+     * @return the number of rows written.
+     * @throws SQLException
+     */
+    public synchronized long sync(String table) throws SQLException {
+        MirroredTable mirrored = this.tables.get(table.toLowerCase());
+        if (mirrored == null) {
+            throw new PolarisRuntimeException(table + " is not mirrored.");
+        }
+        return this.sync(mirrored);
+    }
+
+    /**
+     * Deletes the local rows and the watermark, the next sync copies the
+     * whole table. reads go to the remote database until then.
+     *
+     * @param table
+     * @throws SQLException
+     */
+    public synchronized void reset(String table) throws SQLException {
+        MirroredTable mirrored = this.tables.get(table.toLowerCase());
+        if (mirrored == null) {
+            throw new PolarisRuntimeException(table + " is not mirrored.");
+        }
+        mirrored.ready = false;
+        mirrored.watermark = null;
+        this.local.write(con -> {
+            if (mirrored.created) {
+                con.update("DELETE FROM " + mirrored.table);
+            }
+            return con.update("DELETE FROM polaris_mirror WHERE table_name = ?", mirrored.table);
+        });
+    }
+
+    private long sync(MirroredTable mirrored) throws SQLException {
+        final boolean incremental = mirrored.watermarkColumn != null && mirrored.watermark != null;
+        String query = "SELECT * FROM " + mirrored.table
+                + (incremental ? " WHERE " + mirrored.watermarkColumn + " >= ?" : "");
+        Object[] parameters = incremental ? new Object[]{mirrored.watermark} : new Object[0];
+        // a full copy is written to a staging table and swapped in at the end.
+        final String target = incremental ? mirrored.table : mirrored.table + "_polaris_staging";
+        //----------------------------------------------------------------------
+        final Object[] watermark = {mirrored.watermark};
+        final long[] rows = {0};
+        final List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        try {
+            try (ConnectionManager con = this.remote.createConnectionManager()) {
+                con.fetchResultSet(query, resultSet -> {
+                    this.pull(mirrored, target, resultSet, writes, watermark, rows, incremental);
+                    return null;
+                }, parameters);
+            }
+            SQLiteMirror.await(writes);
+            //------------------------------------------------------------------
+            final Object newWatermark = watermark[0];
+            this.local.write(con -> {
+                if (!incremental) {
+                    con.update("DROP TABLE IF EXISTS " + mirrored.table);
+                    con.update("ALTER TABLE " + target + " RENAME TO " + mirrored.table);
+                }
+                return con.update("INSERT OR REPLACE INTO polaris_mirror "
+                        + "(table_name, watermark, watermark_type, synced_at) VALUES (?, ?, ?, ?)",
+                        mirrored.table, SQLiteMirror.storeWatermark(newWatermark),
+                        SQLiteMirror.typeOf(newWatermark), now);
+            });
+            mirrored.watermark = newWatermark;
+        } catch (SQLException | RuntimeException e) {
+            if (!incremental) {
+                // queued after the staging writes, the local table is untouched.
+                this.local.submit(con -> con.update("DROP TABLE IF EXISTS " + target));
+            }
+            throw e;
+        }
+        if (!incremental) {
+            mirrored.created = true;
+        }
+        mirrored.syncedAt = now;
+        mirrored.ready = mirrored.created;
+        LOGGER.log(Level.FINE, "{0} synced, {1} rows", new Object[]{mirrored.table, rows[0]});
+        return rows[0];
+    }
+
+    /**
+     * Reads the remote rows and queues the local writes to the target table.
+     */
+    private void pull(MirroredTable mirrored, String target, ResultSet resultSet, List<CompletableFuture<Integer>> writes,
+            Object[] watermark, long[] rows, boolean incremental) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        final String[] labels = new String[metaData.getColumnCount()];
+        for (int index = 1; index <= labels.length; index++) {
+            labels[index - 1] = metaData.getColumnLabel(index);
+        }
+        int watermarkIndex = -1;
+        for (int index = 0; index < labels.length; index++) {
+            if (labels[index].equalsIgnoreCase(String.valueOf(mirrored.watermarkColumn))) {
+                watermarkIndex = index;
+            }
+        }
+        //----------------------------------------------------------------------
+        // the target table is created before the first write.
+        final String create = SQLiteMirror.createQuery(target, mirrored.keyColumn, labels, metaData);
+        if (!incremental) {
+            writes.add(this.local.submit(con -> {
+                con.update("DROP TABLE IF EXISTS " + target);
+                return con.update(create);
+            }));
+        } else if (!mirrored.created) {
+            writes.add(this.local.submit(con -> con.update(create)));
+            mirrored.created = true;
+        }
+        //----------------------------------------------------------------------
+        final int rowsPerStatement = Math.max(1, MAX_PARAMETERS / labels.length);
+        List<Object> parameters = new ArrayList<>(rowsPerStatement * labels.length);
+        int batched = 0;
+        while (resultSet.next()) {
+            for (int index = 1; index <= labels.length; index++) {
+                Object value = resultSet.getObject(index);
+                parameters.add(value);
+                if (index - 1 == watermarkIndex) {
+                    SQLiteMirror.advance(watermark, value);
+                }
+            }
+            rows[0]++;
+            if (++batched == rowsPerStatement) {
+                writes.add(this.submitRows(target, labels, batched, parameters));
+                parameters = new ArrayList<>(rowsPerStatement * labels.length);
+                batched = 0;
+            }
+        }
+        if (batched > 0) {
+            writes.add(this.submitRows(target, labels, batched, parameters));
+        }
+    }
+
+    /**
+     * Keeps the highest watermark, integer types are kept as long.
+     */
+    private static void advance(Object[] watermark, Object value) {
+        if (value != null && (watermark[0] == null || PolarisWrapper.compareValues(value, watermark[0]) > 0)) {
+            watermark[0] = PolarisWrapper.normalizeKey(value);
+        }
+    }
+
+    private CompletableFuture<Integer> submitRows(String table, String[] labels, int rows, List<Object> parameters) {
+        StringBuilder query = new StringBuilder(32 + labels.length * 16 + rows * labels.length * 2);
+        query.append("INSERT OR REPLACE INTO ").append(table).append(" (");
+        for (int index = 0; index < labels.length; index++) {
+            query.append(index == 0 ? "" : ", ").append(labels[index]);
+        }
+        query.append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            query.append(row == 0 ? "(" : ", (");
+            for (int index = 0; index < labels.length; index++) {
+                query.append(index == 0 ? "?" : ", ?");
+            }
+            query.append(')');
+        }
+        final String insert = query.toString();
+        final Object[] values = parameters.toArray();
+        return this.local.submit(con -> con.update(insert, values));
+    }
+
+    private static String createQuery(String table, String keyColumn, String[] labels, ResultSetMetaData metaData) throws SQLException {
+        StringBuilder query = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+        query.append(table).append(" (");
+        for (int index = 0; index < labels.length; index++) {
+            query.append(index == 0 ? "" : ", ").append(labels[index]).append(' ')
+                    .append(SQLiteMirror.affinityOf(metaData.getColumnType(index + 1)));
+        }
+        query.append(", PRIMARY KEY (").append(keyColumn).append("))");
+        return query.toString();
+    }
+
+    /**
+     * SQLITE column type for a JDBC type.
+     */
+    private static String affinityOf(int sqlType) {
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return "INTEGER";
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return "REAL";
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return "NUMERIC";
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return "BLOB";
+            default:
+                return "TEXT";
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Watermark Storage, kept with its type so it can be sent back to the
+    // remote database as the same type.
+    //--------------------------------------------------------------------------
+    private static String typeOf(Object watermark) {
+        if (watermark == null) {
+            return null;
+        } else if (watermark instanceof Timestamp) {
+            return "timestamp";
+        } else if (watermark instanceof java.sql.Date) {
+            return "date";
+        } else if (watermark instanceof Long || watermark instanceof Integer
+                || watermark instanceof Short || watermark instanceof Byte) {
+            return "long";
+        } else if (watermark instanceof Number) {
+            return "double";
+        }
+        return "string";
+    }
+
+    private static Object storeWatermark(Object watermark) {
+        String type = SQLiteMirror.typeOf(watermark);
+        return type == null || type.equals("long") || type.equals("double") ? watermark : watermark.toString();
+    }
+
+    private static Object restoreWatermark(Object stored, String type) {
+        if (stored == null || type == null) {
+            return null;
+        }
+        switch (type) {
+            case "timestamp":
+                return Timestamp.valueOf(stored.toString());
+            case "date":
+                return java.sql.Date.valueOf(stored.toString());
+            case "long":
+                return ((Number) stored).longValue();
+            case "double":
+                return ((Number) stored).doubleValue();
+            default:
+                return stored.toString();
+        }
+    }
+
+    private static void await(List<CompletableFuture<Integer>> writes) throws SQLException {
+        try {
+            for (CompletableFuture<Integer> write : writes) {
+                write.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while writing the mirror.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new PolarisRuntimeException("Mirror write failed.", cause);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Background Sync.
+    //--------------------------------------------------------------------------
+    /**
+     * Syncs now and then in the background. failed syncs are logged, the
+     * local data stays readable.
+     *
+     * @param period time between the end of a sync and the next.
+     * @param unit
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polaris-sqlite-mirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.sync();
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Mirror sync failed -> {0}", e.toString());
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Stops the background sync and closes the local file.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdownNow();
+                this.scheduler = null;
+            }
+        }
+        this.local.close();
+    }
+
+}
@@ -0,0 +1,450 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.transfer;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.afterschoolcreatives.polaris.java.exceptions.PolarisRuntimeException;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+
+/**
+ * Copies a table from one database to another, for example from a SQLITE
+ * edge database to the central MariaDB or PostgreSQL. a reader thread streams
+ * the source rows in key order into a bounded queue and the calling thread
+ * writes them to the target with multi row INSERT statements, committing
+ * every chunk of rows.
+ *
+ * <pre>
+ * TableCopier copier = new TableCopier(edge, central, "readings", "id");
+ * copier.setStartAfter(lastCopiedId); // resume, optional.
+ * copier.copy();
+ * lastCopiedId = copier.getCommittedKey();
+ * </pre>
+ *
+ * the committed key is the key of the last row of the last committed chunk,
+ * after a failure the copy can be resumed from it without duplicates. the
+ * target table must exist and have the same column names.
+ *
+ * @author Jhon Melvin
+ */
+public class TableCopier {
+
+    private static final Logger LOGGER = Logger.getLogger(TableCopier.class.getName());
+
+    /**
+     * Parameter limit of one statement, 999 is the lowest among the supported
+     * databases (older SQLITE).
+     */
+    private final static int MAX_PARAMETERS = 999;
+
+    /**
+     * Receives the progress after every commit.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * Called on the writing thread after a chunk is committed.
+         *
+         * @param rows rows copied so far.
+         * @param committedKey key of the last committed row.
+         * @param rowsPerSecond average since the copy started.
+         */
+        void committed(long rows, Object committedKey, double rowsPerSecond);
+    }
+
+    /**
+     * Rows passed from the reader to the writer.
+     */
+    private static class Batch {
+
+        private final List<Object[]> rows;
+        private final Throwable error;
+
+        private Batch(List<Object[]> rows, Throwable error) {
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Marker of the end of the source rows.
+     */
+    private final static Batch END = new Batch(null, null);
+
+    private final ConnectionFactory source;
+    private final ConnectionFactory target;
+    private final String sourceTable;
+    private final String keyColumn;
+    private String targetTable;
+    private String columns;
+    private int batchRows;
+    private int commitRows;
+    private int queueCapacity;
+    private Object startAfter;
+    private ProgressListener progressListener;
+    //--------------------------------------------------------------------------
+    private volatile boolean cancelled;
+    private volatile String[] columnLabels;
+    private Object committedKey;
+    private long copiedRows;
+    private long commits;
+    private long elapsed;
+
+    /**
+     * Constructor.
+     *
+     * @param source factory of the database to read.
+     * @param target factory of the database to write.
+     * @param table table name, the same in both databases unless a target
+     * table is set.
+     * @param keyColumn unique column used for the order and resumption.
+     */
+    public TableCopier(ConnectionFactory source, ConnectionFactory target, String table, String keyColumn) {
+        this.source = source;
+        this.target = target;
+        this.sourceTable = table;
+        this.targetTable = table;
+        this.keyColumn = keyColumn;
+        this.columns = "*";
+        this.batchRows = 500;
+        this.commitRows = 10000;
+        this.queueCapacity = 8;
+    }
+
+    //--------------------------------------------------------------------------
+    // Settings.
+    //--------------------------------------------------------------------------
+    public void setTargetTable(String targetTable) {
+        this.targetTable = targetTable;
+    }
+
+    /**
+     * Columns to copy, must include the key column. default is all columns.
+     *
+     * @param columns comma separated column names.
+     */
+    public void setColumns(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Rows per INSERT statement. default is 500, lowered when needed to stay
+     * below 999 parameters per statement.
+     *
+     * @param batchRows
+     */
+    public void setBatchRows(int batchRows) {
+        this.batchRows = Math.max(1, batchRows);
+    }
+
+    /**
+     * Rows per transaction on the target. default is 10000, a failed copy
+     * loses at most one chunk of work.
+     *
+     * @param commitRows
+     */
+    public void setCommitRows(int commitRows) {
+        this.commitRows = Math.max(1, commitRows);
+    }
+
+    /**
+     * Batches the reader can be ahead of the writer. default is 8.
+     *
+     * @param queueCapacity
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Copies only the rows with a key greater than the given value.
+     *
+     * @param startAfter the committed key of a previous copy, null to copy
+     * everything.
+     */
+    public void setStartAfter(Object startAfter) {
+        this.startAfter = startAfter;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    //--------------------------------------------------------------------------
+    // Copy.
+    //--------------------------------------------------------------------------
+    /**
+     * Runs the copy, the calling thread writes while a second thread reads.
+     *
+     * @return the number of rows copied.
+     * @throws SQLException the rows up to getCommittedKey are copied.
+     */
+    public long copy() throws SQLException {
+        this.cancelled = false;
+        this.columnLabels = null;
+        this.committedKey = this.startAfter;
+        this.copiedRows = 0;
+        this.commits = 0;
+        final long start = System.nanoTime();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        Thread reader = new Thread(() -> this.read(queue), "polaris-table-copy-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try (ConnectionManager con = this.target.createConnectionManager()) {
+            this.write(con, queue, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while copying " + this.sourceTable, e);
+        } finally {
+            this.cancelled = true;
+            queue.clear(); // unblock the reader.
+            this.elapsed = System.nanoTime() - start;
+        }
+        return this.copiedRows;
+    }
+
+    /**
+     * Reader thread.
+     */
+    private void read(BlockingQueue<Batch> queue) {
+        Batch last = END;
+        try (ConnectionManager con = this.source.createConnectionManager()) {
+            String query = "SELECT " + this.columns + " FROM " + this.sourceTable
+                    + (this.startAfter == null ? "" : " WHERE " + this.keyColumn + " > ?")
+                    + " ORDER BY " + this.keyColumn;
+            Object[] parameters = this.startAfter == null ? new Object[0] : new Object[]{this.startAfter};
+            con.fetchResultSet(query, resultSet -> {
+                this.readRows(resultSet, queue);
+                return null;
+            }, parameters);
+        } catch (SQLException | RuntimeException e) {
+            if (!this.cancelled) {
+                last = new Batch(null, e);
+            }
+        }
+        try {
+            if (!this.cancelled) {
+                this.put(queue, last);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readRows(ResultSet resultSet, BlockingQueue<Batch> queue) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int index = 1; index <= labels.length; index++) {
+            labels[index - 1] = metaData.getColumnLabel(index);
+        }
+        this.columnLabels = labels;
+        int rowsPerBatch = Math.max(1, Math.min(this.batchRows, MAX_PARAMETERS / Math.max(1, labels.length)));
+        List<Object[]> rows = new ArrayList<>(rowsPerBatch);
+        try {
+            while (resultSet.next()) {
+                Object[] row = new Object[labels.length];
+                for (int index = 1; index <= labels.length; index++) {
+                    row[index - 1] = resultSet.getObject(index);
+                }
+                rows.add(row);
+                if (rows.size() == rowsPerBatch) {
+                    this.put(queue, new Batch(rows, null));
+                    rows = new ArrayList<>(rowsPerBatch);
+                }
+            }
+            if (!rows.isEmpty()) {
+                this.put(queue, new Batch(rows, null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reading " + this.sourceTable, e);
+        }
+    }
+
+    /**
+     * Waits for room in the queue unless the copy was stopped.
+     */
+    private void put(BlockingQueue<Batch> queue, Batch batch) throws InterruptedException {
+        while (!this.cancelled) {
+            if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+        throw new PolarisRuntimeException("The copy was stopped.");
+    }
+
+    /**
+     * Writer, on the calling thread.
+     */
+    private void write(ConnectionManager con, BlockingQueue<Batch> queue, long start) throws SQLException, InterruptedException {
+        int keyIndex = -1;
+        long uncommitted = 0;
+        Object lastKey = null;
+        boolean inTransaction = false;
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END) {
+                    break;
+                }
+                if (batch.error != null) {
+                    if (batch.error instanceof SQLException) {
+                        throw (SQLException) batch.error;
+                    }
+                    throw (RuntimeException) batch.error;
+                }
+                String[] labels = this.columnLabels;
+                if (keyIndex < 0) {
+                    keyIndex = TableCopier.indexOf(labels, this.keyColumn);
+                }
+                if (!inTransaction) {
+                    con.transactionStart();
+                    inTransaction = true;
+                }
+                con.update(this.insertQuery(labels, batch.rows.size()), TableCopier.flatten(batch.rows, labels.length));
+                uncommitted += batch.rows.size();
+                lastKey = batch.rows.get(batch.rows.size() - 1)[keyIndex];
+                if (uncommitted >= this.commitRows) {
+                    this.commit(con, uncommitted, lastKey, start);
+                    inTransaction = false;
+                    uncommitted = 0;
+                }
+            }
+            if (inTransaction) {
+                this.commit(con, uncommitted, lastKey, start);
+                inTransaction = false;
+            }
+        } finally {
+            if (inTransaction) {
+                con.transactionRollBackQuietly();
+                LOGGER.log(Level.WARNING, "Copy of {0} stopped, resume after key {1}",
+                        new Object[]{this.sourceTable, this.committedKey});
+            }
+        }
+    }
+
+    private void commit(ConnectionManager con, long rows, Object lastKey, long start) throws SQLException {
+        con.transactionCommit();
+        this.copiedRows += rows;
+        this.committedKey = lastKey;
+        this.commits++;
+        if (this.progressListener != null) {
+            this.progressListener.committed(this.copiedRows, lastKey,
+                    TableCopier.perSecond(this.copiedRows, System.nanoTime() - start));
+        }
+    }
+
+    private String insertQuery(String[] labels, int rows) {
+        StringBuilder query = new StringBuilder(32 + labels.length * 16 + rows * labels.length * 2);
+        query.append("INSERT INTO ").append(this.targetTable).append(" (");
+        for (int index = 0; index < labels.length; index++) {
+            query.append(index == 0 ? "" : ", ").append(labels[index]);
+        }
+        query.append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            query.append(row == 0 ? "(" : ", (");
+            for (int index = 0; index < labels.length; index++) {
+                query.append(index == 0 ? "?" : ", ?");
+            }
+            query.append(')');
+        }
+        return query.toString();
+    }
+
+    private static Object[] flatten(List<Object[]> rows, int width) {
+        Object[] parameters = new Object[rows.size() * width];
+        int offset = 0;
+        for (Object[] row : rows) {
+            System.arraycopy(row, 0, parameters, offset, width);
+            offset += width;
+        }
+        return parameters;
+    }
+
+    private static int indexOf(String[] labels, String column) {
+        for (int index = 0; index < labels.length; index++) {
+            if (labels[index].equalsIgnoreCase(column)) {
+                return index;
+            }
+        }
+        throw new PolarisRuntimeException("The key column " + column + " is not selected.");
+    }
+
+    private static double perSecond(long rows, long nanos) {
+        return nanos <= 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    //--------------------------------------------------------------------------
+    // Report.
+    //--------------------------------------------------------------------------
+    /**
+     *
+     * @return key of the last committed row, the start key when nothing was
+     * committed. pass it to setStartAfter to resume.
+     */
+    public Object getCommittedKey() {
+        return committedKey;
+    }
+
+    /**
+     *
+     * @return rows committed by the last copy.
+     */
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     *
+     * @return duration of the last copy in nanoseconds.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     *
+     * @return committed rows per second of the last copy.
+     */
+    public double getRowsPerSecond() {
+        return TableCopier.perSecond(this.copiedRows, this.elapsed);
+    }
+
+}
@@ -10,6 +10,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.tukaani.xz.LZMA2Options;
 import org.tukaani.xz.XZ;
 import org.tukaani.xz.XZInputStream;
@@ -25,6 +26,21 @@ public class Compressor {
         return mib * 1048576;
     }
 
+    /**
+     * Wraps a stream with XZ compression for streaming writes. call finish or
+     * close on the returned stream to write the end of the XZ data.
+     *
+     * @param output
+     * @param preset 0 (fast) to 9 (small), 6 is the XZ default.
+     * @return
+     * @throws IOException
+     */
+    public final static XZOutputStream createXZOutputStream(OutputStream output, int preset) throws IOException {
+        LZMA2Options options = new LZMA2Options();
+        options.setPreset(preset);
+        return new XZOutputStream(output, options, XZ.CHECK_CRC64);
+    }
+
     public final static void compressXZ(String input, String output) throws FileNotFoundException, IOException {
         BufferedInputStream bis = null;
         FileOutputStream fos = null;
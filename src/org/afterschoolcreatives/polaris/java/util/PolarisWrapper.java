@@ -68,4 +68,43 @@ public class PolarisWrapper {
         throw new PolarisRuntimeException("Unknown Primitive Type");
     }
 
+    /**
+     * Widens integral numbers to Long so that keys compare equal whatever
+     * number type the driver or the caller used for them.
+     *
+     * @param key
+     * @return the key as Long if integral, otherwise the same key.
+     */
+    public final static Object normalizeKey(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        return key;
+    }
+
+    /**
+     * Compares two non null values such as watermarks read from different
+     * rows. integral numbers are compared as long, other numbers of different
+     * classes as double, anything else must be of the same comparable class.
+     *
+     * @param left
+     * @param right
+     * @return negative, zero or positive like Comparable.
+     */
+    @SuppressWarnings("unchecked") // both values are checked to be of the same comparable class.
+    public final static int compareValues(Object left, Object right) {
+        left = PolarisWrapper.normalizeKey(left);
+        right = PolarisWrapper.normalizeKey(right);
+        if (left.getClass() != right.getClass()) {
+            if (left instanceof Number && right instanceof Number) {
+                return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+            }
+            throw new PolarisRuntimeException("Cannot compare " + left.getClass().getName() + " with " + right.getClass().getName());
+        }
+        if (!(left instanceof Comparable)) {
+            throw new PolarisRuntimeException(left.getClass().getName() + " is not comparable");
+        }
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
 }
@@ -0,0 +1,365 @@
+/**
+ *
+ * Polaris Java Library - Afterschool Creatives "Captivating Creativity"
+ *
+ * Copyright 2018 Jhon Melvin Perello
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package org.afterschoolcreatives.polaris.java.sql.bench;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionFactory;
+import org.afterschoolcreatives.polaris.java.sql.ConnectionManager;
+import org.afterschoolcreatives.polaris.java.sql.DataRow;
+import org.afterschoolcreatives.polaris.java.sql.DataSet;
+import org.afterschoolcreatives.polaris.java.sql.builder.SimpleQuery;
+import org.afterschoolcreatives.polaris.java.sql.orm.PolarisRecord;
+import org.afterschoolcreatives.polaris.java.sql.orm.annotations.Column;
+import org.afterschoolcreatives.polaris.java.sql.orm.annotations.PrimaryKey;
+import org.afterschoolcreatives.polaris.java.sql.orm.annotations.Table;
+import org.afterschoolcreatives.polaris.java.sql.osql.ObjectiveTable;
+import org.afterschoolcreatives.polaris.java.sql.osql.annotations.Id;
+
+/**
+ * Measures how many bytes a fetched row costs in each result structure of the
+ * library: sql.DataSet, osql.DataSet and hydrated entities of both mappers.
+ * tables with 2, 8 and 32 columns of integer, text, real and mixed values are
+ * created in a temporary SQLITE database and fetched repeatedly.
+ *
+ * Two numbers are reported per row:
+ * <ul>
+ * <li>retained - heap still used while the result is referenced, measured as
+ * the used heap difference around the fetch after full collections.</li>
+ * <li>allocated - bytes allocated by the fetching thread including the JDBC
+ * driver and the garbage, from the HotSpot thread allocation counter.</li>
+ * </ul>
+ * the estimate column is DataRow.estimateSize for comparison.
+ *
+ * This is a benchmark in the test sources, it is not part of the library jar.
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:sqlite-jdbc.jar:slf4j-api.jar \
+ *      org.afterschoolcreatives.polaris.java.sql.bench.MemoryFootprint [rows]
+ * </pre>
+ *
+ * Run with a fixed heap (-Xms1g -Xmx1g) and the parallel collector
+ * (-XX:+UseParallelGC). the serial collector of some JDK versions reports the
+ * used heap of the previous collection which makes the retained numbers
+ * useless.
+ *
+ * @author Jhon Melvin
+ */
+public class MemoryFootprint {
+
+    private final static int[] COLUMN_COUNTS = {2, 8, 32};
+    private final static String[] COLUMN_TYPES = {"INTEGER", "TEXT", "REAL", "MIXED"};
+    private final static int ROUNDS = 5;
+
+    /**
+     * Keeps the measured result reachable.
+     */
+    private static volatile Object sink;
+
+    //--------------------------------------------------------------------------
+    // Entities.
+    //--------------------------------------------------------------------------
+    /**
+     * Entity of the sql.orm mapper.
+     */
+    @Table("bench_entity")
+    public static class RecordEntity extends PolarisRecord {
+
+        @PrimaryKey
+        @Column("id")
+        private Integer id;
+        @Column("name")
+        private String name;
+        @Column("amount")
+        private Double amount;
+        @Column("code")
+        private Integer code;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+
+        public Integer getCode() {
+            return code;
+        }
+
+        public void setCode(Integer code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * Entity of the osql mapper.
+     */
+    @org.afterschoolcreatives.polaris.java.sql.osql.annotations.Table("bench_entity")
+    public static class ObjectiveEntity extends ObjectiveTable {
+
+        @Id
+        @org.afterschoolcreatives.polaris.java.sql.osql.annotations.Column(name = "id")
+        private Integer id;
+        @org.afterschoolcreatives.polaris.java.sql.osql.annotations.Column(name = "name")
+        private String name;
+        @org.afterschoolcreatives.polaris.java.sql.osql.annotations.Column(name = "amount")
+        private Double amount;
+        @org.afterschoolcreatives.polaris.java.sql.osql.annotations.Column(name = "code")
+        private Integer code;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+
+        public Integer getCode() {
+            return code;
+        }
+
+        public void setCode(Integer code) {
+            this.code = code;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Measurement.
+    //--------------------------------------------------------------------------
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the used heap stops shrinking.
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(20);
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the fetch a few times and reports the median numbers per row.
+     *
+     * @param label
+     * @param rows
+     * @param fetch returns the materialized result.
+     * @param estimate average DataRow.estimateSize or -1.
+     * @throws Exception
+     */
+    private static void measure(String label, int rows, Callable<Object> fetch, double estimate) throws Exception {
+        sink = fetch.call(); // warm up.
+        sink = null;
+        long[] retained = new long[ROUNDS];
+        long[] allocated = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = MemoryFootprint.usedHeap();
+            long allocationStart = MemoryFootprint.allocatedBytes();
+            sink = fetch.call();
+            long allocationEnd = MemoryFootprint.allocatedBytes();
+            long after = MemoryFootprint.usedHeap();
+            sink = null;
+            retained[round] = after - before;
+            allocated[round] = allocationEnd - allocationStart;
+        }
+        Arrays.sort(retained);
+        Arrays.sort(allocated);
+        System.out.println(String.format(Locale.ROOT, "%-34s %10.1f %12.1f %10s",
+                label,
+                (double) retained[ROUNDS / 2] / rows,
+                allocated[ROUNDS / 2] < 0 ? Double.NaN : (double) allocated[ROUNDS / 2] / rows,
+                estimate < 0 ? "-" : String.format(Locale.ROOT, "%.1f", estimate)));
+    }
+
+    //--------------------------------------------------------------------------
+    // Data.
+    //--------------------------------------------------------------------------
+    private static Object valueOf(String type, int column, Random random) {
+        if (type.equals("MIXED")) {
+            type = COLUMN_TYPES[column % 3];
+        }
+        switch (type) {
+            case "INTEGER":
+                return random.nextInt();
+            case "REAL":
+                return random.nextDouble();
+            default:
+                char[] text = new char[16];
+                for (int i = 0; i < text.length; i++) {
+                    text[i] = (char) ('a' + random.nextInt(26));
+                }
+                return new String(text);
+        }
+    }
+
+    private static String createTable(ConnectionManager con, String type, int columns, int rows) throws SQLException {
+        String table = "bench_" + type.toLowerCase(Locale.ROOT) + "_" + columns;
+        StringBuilder create = new StringBuilder("CREATE TABLE " + table + " (");
+        StringBuilder insert = new StringBuilder("INSERT INTO " + table + " VALUES (");
+        for (int column = 0; column < columns; column++) {
+            String columnType = type.equals("MIXED") ? COLUMN_TYPES[column % 3] : type;
+            create.append(column == 0 ? "" : ", ").append("c").append(column).append(' ').append(columnType);
+            insert.append(column == 0 ? "?" : ", ?");
+        }
+        con.update(create.append(")").toString());
+        insert.append(")");
+        //----------------------------------------------------------------------
+        Random random = new Random(columns);
+        Object[] values = new Object[columns];
+        con.update("BEGIN");
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                values[column] = MemoryFootprint.valueOf(type, column, random);
+            }
+            con.update(insert.toString(), values);
+        }
+        con.update("COMMIT");
+        return table;
+    }
+
+    private static void createEntityTable(ConnectionManager con, int rows) throws SQLException {
+        con.update("CREATE TABLE bench_entity (id INTEGER PRIMARY KEY, name TEXT, amount REAL, code INTEGER)");
+        Random random = new Random(4);
+        con.update("BEGIN");
+        for (int row = 0; row < rows; row++) {
+            con.update("INSERT INTO bench_entity VALUES (?, ?, ?, ?)",
+                    row, MemoryFootprint.valueOf("TEXT", 0, random), random.nextDouble(), random.nextInt());
+        }
+        con.update("COMMIT");
+    }
+
+    private static double averageEstimate(DataSet dataSet) {
+        long total = 0;
+        for (DataRow row : dataSet) {
+            total += row.estimateSize();
+        }
+        return dataSet.isEmpty() ? 0 : (double) total / dataSet.size();
+    }
+
+    //--------------------------------------------------------------------------
+    // Main.
+    //--------------------------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File database = File.createTempFile("polaris-footprint", ".db");
+        database.deleteOnExit();
+        //----------------------------------------------------------------------
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setConnectionDriver(ConnectionFactory.Driver.SQLite);
+        factory.setSQLiteURL(database.getAbsolutePath());
+        org.afterschoolcreatives.polaris.java.sql.osql.ConnectionFactory objectiveFactory
+                = new org.afterschoolcreatives.polaris.java.sql.osql.ConnectionFactory(
+                        new org.afterschoolcreatives.polaris.java.sql.osql.ConnectionFactory.Builder(
+                                org.afterschoolcreatives.polaris.java.sql.osql.ConnectionFactory.Driver.SQLite)
+                                .database(database.getAbsolutePath())
+                                .build());
+        //----------------------------------------------------------------------
+        try (ConnectionManager con = factory.createConnectionManager();
+                org.afterschoolcreatives.polaris.java.sql.osql.ConnectionManager objectiveCon = objectiveFactory.createConnectionManager()) {
+            System.out.println(String.format(Locale.ROOT, "%d rows, bytes per row", rows));
+            System.out.println(String.format(Locale.ROOT, "%-34s %10s %12s %10s", "structure", "retained", "allocated", "estimate"));
+            for (String type : COLUMN_TYPES) {
+                for (int columns : COLUMN_COUNTS) {
+                    String table = MemoryFootprint.createTable(con, type, columns, rows);
+                    String query = "SELECT * FROM " + table;
+                    String shape = type.toLowerCase(Locale.ROOT) + " x " + columns;
+                    double estimate = MemoryFootprint.averageEstimate(con.fetch(query));
+                    MemoryFootprint.measure("sql.DataSet " + shape, rows, () -> con.fetch(query), estimate);
+                    MemoryFootprint.measure("osql.DataSet " + shape, rows, () -> objectiveCon.fetch(query), -1);
+                }
+            }
+            //------------------------------------------------------------------
+            MemoryFootprint.createEntityTable(con, rows);
+            String query = "SELECT * FROM bench_entity";
+            MemoryFootprint.measure("sql.DataSet entity table", rows, () -> con.fetch(query),
+                    MemoryFootprint.averageEstimate(con.fetch(query)));
+            MemoryFootprint.measure("PolarisRecord entities", rows, () -> {
+                List<RecordEntity> entities = new RecordEntity().findMany(con, new SimpleQuery().addStatement(query));
+                return entities;
+            }, -1);
+            MemoryFootprint.measure("ObjectiveTable entities", rows, () -> {
+                ObjectiveEntity table = ObjectiveTable.getTable(ObjectiveEntity.class);
+                table.fetch(objectiveCon, query);
+                return table.getDataSet();
+            }, -1);
+        }
+    }
+
+}